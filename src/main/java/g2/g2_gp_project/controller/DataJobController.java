@@ -1,10 +1,11 @@
 package g2.g2_gp_project.controller;
 
 import g2.g2_gp_project.dto.ApiResponse;
-import g2.g2_gp_project.dto.DataImportResult;
 import g2.g2_gp_project.dto.DataQualityReport;
-import g2.g2_gp_project.service.DataImportService;
+import g2.g2_gp_project.dto.ImportJobStatus;
+import g2.g2_gp_project.dto.ImportOptions;
 import g2.g2_gp_project.service.DataQualityService;
+import g2.g2_gp_project.service.ImportJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -13,14 +14,17 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/admin/jobs")
 @RequiredArgsConstructor
 @Slf4j
 public class DataJobController {
 
-    private final DataImportService dataImportService;
     private final DataQualityService dataQualityService;
+    private final ImportJobService importJobService;
 
     /**
      * Analyze CSV/Excel file quality before importing
@@ -70,12 +74,13 @@ public class DataJobController {
     }
 
     /**
-     * Upload CSV/Excel file and process through ETL pipeline
+     * Upload CSV/Excel file and queue it as a background ETL job.
+     * Returns the job ID immediately; poll GET /api/admin/jobs/{jobId} for progress.
      * Only accessible by ADMIN role
      */
     @PostMapping("/upload-csv")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<DataImportResult>> uploadCsvFile(
+    public ResponseEntity<ApiResponse<ImportJobStatus>> uploadCsvFile(
             @RequestParam("file") MultipartFile file) {
 
         log.info("Received file upload request: {}", file.getOriginalFilename());
@@ -84,7 +89,7 @@ public class DataJobController {
             // Validate file
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest()
-                        .body(ApiResponse.<DataImportResult>builder()
+                        .body(ApiResponse.<ImportJobStatus>builder()
                                 .success(false)
                                 .message("File is empty")
                                 .build());
@@ -93,7 +98,7 @@ public class DataJobController {
             String fileName = file.getOriginalFilename();
             if (fileName == null) {
                 return ResponseEntity.badRequest()
-                        .body(ApiResponse.<DataImportResult>builder()
+                        .body(ApiResponse.<ImportJobStatus>builder()
                                 .success(false)
                                 .message("File name is null")
                                 .build());
@@ -101,47 +106,201 @@ public class DataJobController {
 
             // Check file extension
             String lowerCaseFileName = fileName.toLowerCase();
-            if (!lowerCaseFileName.endsWith(".csv") &&
-                !lowerCaseFileName.endsWith(".xlsx") &&
-                !lowerCaseFileName.endsWith(".xls")) {
+            if (lowerCaseFileName.endsWith(".xls")) {
                 return ResponseEntity.badRequest()
-                        .body(ApiResponse.<DataImportResult>builder()
+                        .body(ApiResponse.<ImportJobStatus>builder()
                                 .success(false)
-                                .message("Invalid file format. Only CSV and Excel files are supported.")
+                                .message("Legacy .xls files are not supported. Please save the file as .xlsx or CSV.")
                                 .build());
             }
-
-            // Process file through ETL pipeline
-            DataImportResult result = dataImportService.processAndLoadFile(file);
-
-            if (result.isSuccess()) {
-                return ResponseEntity.ok(
-                        ApiResponse.<DataImportResult>builder()
-                                .success(true)
-                                .message("File processed successfully")
-                                .data(result)
-                                .build()
-                );
-            } else {
-                // Return error but with 200 status so frontend can read the message
-                return ResponseEntity.ok()
-                        .body(ApiResponse.<DataImportResult>builder()
+            if (!ImportJobService.isSupportedFile(lowerCaseFileName)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.<ImportJobStatus>builder()
                                 .success(false)
-                                .message(result.getMessage())
-                                .data(result)
+                                .message("Invalid file format. Supported: CSV, Excel (.xlsx) and compressed CSV (.csv.gz, .csv.zst, .zip).")
                                 .build());
             }
 
+            // Queue file for the ETL pipeline
+            ImportJobStatus job = importJobService.submit(file);
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.<ImportJobStatus>builder()
+                            .success(true)
+                            .message("File queued for processing")
+                            .data(job)
+                            .build());
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.<ImportJobStatus>builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build());
         } catch (Exception e) {
             log.error("Error processing file: {}", e.getMessage(), e);
             return ResponseEntity.ok()
-                    .body(ApiResponse.<DataImportResult>builder()
+                    .body(ApiResponse.<ImportJobStatus>builder()
                             .success(false)
                             .message("Error processing file: " + e.getMessage())
                             .build());
         }
     }
 
+    /**
+     * Upload a file and import it while building its data quality report in the
+     * same pass. With minValidPercent (0-100) the import is aborted, and the
+     * staged rows removed, once the share of valid rows falls below it.
+     * The report is returned in the job result.
+     * Only accessible by ADMIN role
+     */
+    @PostMapping("/analyze-and-import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> analyzeAndImport(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "minValidPercent", required = false) Double minValidPercent) {
+
+        log.info("Received analyze-and-import request: {}", file.getOriginalFilename());
+
+        String fileName = file.getOriginalFilename();
+        if (file.isEmpty() || fileName == null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("File is empty"));
+        }
+        if (!ImportJobService.isSupportedFile(fileName.toLowerCase())) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Invalid file format. Supported: CSV, Excel (.xlsx) and compressed CSV (.csv.gz, .csv.zst, .zip)."));
+        }
+        if (minValidPercent != null && (minValidPercent < 0 || minValidPercent > 100)) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("minValidPercent must be between 0 and 100"));
+        }
+
+        try {
+            ImportOptions options = ImportOptions.builder()
+                    .analyzeQuality(true)
+                    .minValidPercent(minValidPercent)
+                    .build();
+            ImportJobStatus job = importJobService.submit(file, options);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("File queued for analysis and import", job));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error processing file: {}", e.getMessage(), e);
+            return ResponseEntity.ok().body(ApiResponse.error("Error processing file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * List the CSV/XLSX files in the server-side drop directory
+     * Only accessible by ADMIN role
+     */
+    @GetMapping("/drop-files")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<String>>> listDropFiles() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(importJobService.listDropFiles()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error listing drop directory: {}", e.getMessage(), e);
+            return ResponseEntity.ok().body(ApiResponse.error("Error listing drop directory: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Import a file that is already in the server-side drop directory, without
+     * an upload. Queued as a background ETL job like /upload-csv.
+     * Only accessible by ADMIN role
+     */
+    @PostMapping("/import-local")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> importLocalFile(@RequestParam("fileName") String fileName) {
+        log.info("Received local file import request: {}", fileName);
+        try {
+            ImportJobStatus job = importJobService.submitLocal(fileName);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("File queued for processing", job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Resume a chunked import from its last committed checkpoint as a background job
+     * Only accessible by ADMIN role
+     */
+    @PostMapping("/resume/{importBatchId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> resumeImport(
+            @PathVariable("importBatchId") String importBatchId) {
+        log.info("Received resume request for import batch {}", importBatchId);
+        try {
+            ImportJobStatus job = importJobService.submitResume(importBatchId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Resume queued", job));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Re-run the rows an import rejected (transactions_rejected) through the
+     * transform as a background job; reason limits it to one reason code
+     * (PARSE_ERROR, NO_VALID_CUSTOMER, TRANSFORM_ERROR)
+     * Only accessible by ADMIN role
+     */
+    @PostMapping("/rejected/{importBatchId}/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> replayRejected(
+            @PathVariable("importBatchId") String importBatchId,
+            @RequestParam(value = "reason", required = false) String reason) {
+        log.info("Received replay request for rejected rows of import batch {} (reason: {})", importBatchId, reason);
+        try {
+            ImportJobStatus job = importJobService.submitReplay(importBatchId, reason);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Replay queued", job));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Get status and progress of an import job
+     * Only accessible by ADMIN role
+     */
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> getJobStatus(@PathVariable("jobId") String jobId) {
+        ImportJobStatus status = importJobService.getStatus(jobId);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("Import job not found: " + jobId));
+        }
+        return ResponseEntity.ok(ApiResponse.success(status));
+    }
+
+    /**
+     * Cancel a queued or running import job
+     * Only accessible by ADMIN role
+     */
+    @PostMapping("/{jobId}/cancel")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobStatus>> cancelJob(@PathVariable("jobId") String jobId) {
+        if (!importJobService.cancel(jobId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("No running import job with ID: " + jobId));
+        }
+        return ResponseEntity.ok(
+                ApiResponse.success("Cancellation requested", importJobService.getStatus(jobId))
+        );
+    }
+
     /**
      * Health check endpoint for data job service
      */
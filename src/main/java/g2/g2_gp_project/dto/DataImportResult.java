@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,5 +21,15 @@ public class DataImportResult {
     private int orderItemsProcessed;
     private int errorCount;
     private String fileName;
+    private String importBatchId;
+    private long fileSize;
+    private long bytesRead;
+    private String fileDigest;
+    private boolean duplicateFile;
+    private int duplicateRowsSkipped;
+    private DataQualityReport qualityReport; // only for analyze-and-import
+    private int rowsRejected;                // written to transactions_rejected
+    private Map<String, Long> rejectedByReason;
+    private Map<String, Long> defaultedByReason; // unparseable values loaded with a default
 }
 
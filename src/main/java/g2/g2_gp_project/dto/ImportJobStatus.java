@@ -0,0 +1,29 @@
+package g2.g2_gp_project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobStatus {
+    private String jobId;
+    private String fileName;
+    private String state;   // QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    private String phase;   // QUEUED, EXTRACT, TRANSFORM (includes loading), DONE
+    private long rowsProcessed;
+    private long totalRows;
+    private double rowsPerSecond;
+    private long etaSeconds; // -1 when unknown
+    private List<PipelineStageStatus> stages; // empty when the pipeline is off
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+    private String message;
+    private DataImportResult result;
+}
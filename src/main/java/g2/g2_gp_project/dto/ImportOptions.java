@@ -0,0 +1,16 @@
+package g2.g2_gp_project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportOptions {
+    private boolean analyzeQuality;   // build a DataQualityReport while staging rows
+    private Double minValidPercent;   // abort the import if valid rows drop below this share (0-100)
+    private boolean readInPlace;      // file already on the server's disk (import-local, drop folder), not an upload
+}
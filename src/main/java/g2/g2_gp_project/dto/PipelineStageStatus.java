@@ -0,0 +1,19 @@
+package g2.g2_gp_project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PipelineStageStatus {
+    private String name;
+    private long rowsProcessed;
+    private double rowsPerSecond;   // since the stage started
+    private double busyPercent;     // share of time spent handling items rather than waiting for them
+    private int queueDepth;         // items waiting in front of the stage
+    private int queueCapacity;
+}
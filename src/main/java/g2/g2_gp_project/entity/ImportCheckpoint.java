@@ -0,0 +1,45 @@
+package g2.g2_gp_project.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked import. Saved in the same transaction as each
+ * committed chunk, so it always matches what is in PostgreSQL.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "import_checkpoints")
+public class ImportCheckpoint {
+    @Id
+    @Column(name = "import_batch_id", length = 36)
+    private String importBatchId;
+
+    @Column(name = "file_name", length = 255)
+    private String fileName;
+
+    // Raw rows are committed in (invoiceNo, rowNumber) order; resume continues after this invoice
+    @Column(name = "last_invoice_no", length = 20)
+    private String lastInvoiceNo;
+
+    @Column(name = "last_row_number")
+    private Integer lastRowNumber;
+
+    @Column(name = "rows_committed")
+    private long rowsCommitted;
+
+    @Column(name = "chunks_committed")
+    private int chunksCommitted;
+
+    @Column(name = "status", length = 20)
+    private String status; // RUNNING, COMPLETED, FAILED
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,32 @@
+package g2.g2_gp_project.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * An uploaded file, keyed by the SHA-256 digest of its content, so an exact
+ * re-upload of a completed import can be recognised and skipped
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "import_files")
+public class ImportedFile {
+    @Id
+    private String sha256;
+
+    private String fileName;
+    private long fileSize;
+
+    @Indexed
+    private String importBatchId;
+
+    private String status; // STAGED, COMPLETED
+    private LocalDateTime importedAt;
+}
@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -12,7 +15,16 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "transactions_raw")
+@CompoundIndexes({
+        @CompoundIndex(name = "import_batch_row_idx", def = "{'importBatchId': 1, 'rowNumber': 1}"),
+        @CompoundIndex(name = "import_batch_invoice_idx", def = "{'importBatchId': 1, 'invoiceNo': 1, 'rowNumber': 1}")
+})
 public class RawTransaction {
+    // Bits of typedValidity: set when the typed value of that field was parsed successfully
+    public static final int QUANTITY_VALID = 1;
+    public static final int UNIT_PRICE_VALID = 1 << 1;
+    public static final int INVOICE_DATE_VALID = 1 << 2;
+
     @Id
     private String id;
 
@@ -27,6 +39,21 @@ public class RawTransaction {
 
     private LocalDateTime importedAt;
     private String fileName;
+    private String importBatchId;
     private Integer rowNumber;
+
+    // Content fingerprint (see RowFingerprinter); sparse so rows staged before it existed are allowed
+    @Indexed(unique = true, sparse = true)
+    private String rowFingerprint;
+
+    // Typed staging (etl.import.typed-staging): values parsed during extract; null when disabled
+    private Integer quantityValue;
+    private Long unitPriceCents;
+    private LocalDateTime invoiceDateValue;
+    private Integer typedValidity;
+
+    public boolean hasTypedValue(int validBit) {
+        return typedValidity != null && (typedValidity & validBit) != 0;
+    }
 }
 
@@ -0,0 +1,51 @@
+package g2.g2_gp_project.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row that could not be parsed or transformed, kept with its raw values and
+ * a reason code so it can be fixed and replayed through the transform.
+ * The id is derived from batch, file and row number, so rejecting the same row
+ * again (resume, replay) replaces the document instead of adding one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "transactions_rejected")
+@CompoundIndexes({
+        @CompoundIndex(name = "import_batch_reason_row_idx", def = "{'importBatchId': 1, 'reason': 1, 'rowNumber': 1}")
+})
+public class RejectedTransaction {
+    // Reason codes
+    public static final String PARSE_ERROR = "PARSE_ERROR";
+    public static final String NO_VALID_CUSTOMER = "NO_VALID_CUSTOMER";
+    public static final String TRANSFORM_ERROR = "TRANSFORM_ERROR";
+
+    @Id
+    private String id;
+
+    private String importBatchId;
+    private String fileName;
+    private Integer rowNumber;
+    private String reason;
+    private String message;
+
+    private String invoiceNo;
+    private String stockCode;
+    private String description;
+    private String quantity;
+    private String invoiceDate;
+    private String unitPrice;
+    private String customerId;
+    private String country;
+
+    private LocalDateTime rejectedAt;
+}
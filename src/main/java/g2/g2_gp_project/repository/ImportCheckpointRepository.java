@@ -0,0 +1,9 @@
+package g2.g2_gp_project.repository;
+
+import g2.g2_gp_project.entity.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+}
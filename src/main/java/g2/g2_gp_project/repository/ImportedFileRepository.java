@@ -0,0 +1,12 @@
+package g2.g2_gp_project.repository;
+
+import g2.g2_gp_project.entity.ImportedFile;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ImportedFileRepository extends MongoRepository<ImportedFile, String> {
+    Optional<ImportedFile> findByImportBatchId(String importBatchId);
+}
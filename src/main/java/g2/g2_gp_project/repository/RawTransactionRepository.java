@@ -2,9 +2,19 @@ package g2.g2_gp_project.repository;
 
 import g2.g2_gp_project.entity.RawTransaction;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RawTransactionRepository extends MongoRepository<RawTransaction, String> {
-}
+    void deleteByImportBatchId(String importBatchId);
 
+    /**
+     * Rows already staged with any of the given fingerprints; only the fingerprint is loaded
+     */
+    @Query(value = "{ 'rowFingerprint': { $in: ?0 } }", fields = "{ 'rowFingerprint': 1 }")
+    List<RawTransaction> findFingerprintsIn(Collection<String> rowFingerprints);
+}
@@ -0,0 +1,16 @@
+package g2.g2_gp_project.repository;
+
+import g2.g2_gp_project.entity.RejectedTransaction;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RejectedTransactionRepository extends MongoRepository<RejectedTransaction, String> {
+    List<RejectedTransaction> findByImportBatchIdOrderByRowNumberAsc(String importBatchId);
+
+    List<RejectedTransaction> findByImportBatchIdAndReasonOrderByRowNumberAsc(String importBatchId, String reason);
+
+    void deleteByImportBatchId(String importBatchId);
+}
@@ -1,26 +1,64 @@
 package g2.g2_gp_project.service;
 
+import com.github.luben.zstd.ZstdInputStream;
 import g2.g2_gp_project.dto.DataImportResult;
+import g2.g2_gp_project.dto.DataQualityReport;
+import g2.g2_gp_project.dto.ImportOptions;
 import g2.g2_gp_project.entity.*;
 import g2.g2_gp_project.repository.*;
+import g2.g2_gp_project.util.CountingInputStream;
+import g2.g2_gp_project.util.ChannelCsvReader;
+import g2.g2_gp_project.util.CsvHeader;
+import g2.g2_gp_project.util.ImportDateParser;
+import g2.g2_gp_project.util.NumericFieldScanner;
+import g2.g2_gp_project.util.RowFingerprinter;
+import g2.g2_gp_project.util.TransactionColumnMapper;
+import g2.g2_gp_project.util.TransactionColumnMapper.Column;
+import g2.g2_gp_project.util.XlsxStreamingReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -32,21 +70,148 @@ public class DataImportService {
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final ImportCheckpointRepository importCheckpointRepository;
+    private final ImportedFileRepository importedFileRepository;
+    private final RejectedTransactionRepository rejectedTransactionRepository;
+    private final MongoStagingLoader mongoStagingLoader;
+    private final PostgresCopyLoader postgresCopyLoader;
+    private final PostgresUpsertLoader postgresUpsertLoader;
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final String LOAD_MODE_COPY = "copy";
+    private static final String CHECKPOINT_RUNNING = "RUNNING";
+    private static final String CHECKPOINT_COMPLETED = "COMPLETED";
+    private static final String CHECKPOINT_FAILED = "FAILED";
+    private static final String FILE_STAGED = "STAGED";
+    private static final String FILE_COMPLETED = "COMPLETED";
+    // Reasons counted when the transform falls back to a default value
+    private static final String DEFAULTED_UNIT_PRICE = "UNPARSEABLE_UNIT_PRICE";
+    private static final String DEFAULTED_QUANTITY = "UNPARSEABLE_QUANTITY";
+    private static final String DEFAULTED_INVOICE_DATE = "UNPARSEABLE_INVOICE_DATE";
+
+    private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+    // Raw fields read by the transform; importedAt, the fingerprint and _id are not needed
+    private static final String[] TRANSFORM_FIELDS = {
+            "invoiceNo", "stockCode", "description", "quantity", "invoiceDate", "unitPrice", "customerId",
+            "country", "fileName", "rowNumber", "quantityValue", "unitPriceCents", "invoiceDateValue", "typedValidity"
+    };
+    // Rows seen before the quality threshold of analyze-and-import is enforced
+    private static final int QUALITY_MIN_SAMPLE_ROWS = 1000;
 
     /**
-     * Main method to process and load file data through ETL pipeline
+     * Number of raw rows buffered before they are written to MongoDB and released
      */
-    public DataImportResult processAndLoadFile(MultipartFile file) {
-        log.info("Starting ETL process for file: {}", file.getOriginalFilename());
+    @Value("${etl.import.chunk-size:5000}")
+    private int importChunkSize;
+
+    /**
+     * Maximum number of ids per IN (...) query when preloading customers, products and orders
+     */
+    @Value("${etl.transform.preload-chunk-size:2000}")
+    private int preloadChunkSize;
+
+    /**
+     * How orders and order items are written: "jpa" (saveAll) or "copy" (PostgreSQL COPY)
+     */
+    @Value("${etl.load.mode:jpa}")
+    private String loadMode;
+
+    /**
+     * Write customers and products with bulk INSERT ... ON CONFLICT instead of JPA saveAll
+     */
+    @Value("${etl.load.upsert-dimensions:true}")
+    private boolean upsertDimensions;
+
+    /**
+     * Number of ForkJoinPool workers for the transform, in one pool shared by all
+     * imports; 1 or less transforms sequentially
+     */
+    @Value("${etl.transform.parallelism:1}")
+    private int transformParallelism;
+
+    /**
+     * Documents per batch of the Mongo cursor that streams staged rows into the transform
+     */
+    @Value("${etl.transform.cursor-batch-size:2000}")
+    private int cursorBatchSize;
+
+    /**
+     * Run parsing and Mongo writes, and cursor reads, transform and PostgreSQL load, as concurrent stages
+     */
+    @Value("${etl.pipeline.enabled:true}")
+    private boolean pipelineEnabled;
+
+    /**
+     * Chunks or segments that may wait between two pipeline stages before the producer blocks
+     */
+    @Value("${etl.pipeline.queue-capacity:4}")
+    private int pipelineQueueCapacity;
+
+    /**
+     * Commit the load every N invoices and record a resumable checkpoint; 0 loads the batch in one transaction
+     */
+    @Value("${etl.load.commit-invoices:0}")
+    private int commitInvoices;
+
+    /**
+     * Skip exact duplicate files (SHA-256) and rows that are already staged (row fingerprints)
+     */
+    @Value("${etl.import.deduplicate:true}")
+    private boolean deduplicate;
+
+    /**
+     * Also stage parsed quantity, price (cents) and date with a validity bitmask, so the transform does not re-parse text
+     */
+    @Value("${etl.import.typed-staging:false}")
+    private boolean typedStaging;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Shared by all segments and imports; only created with etl.transform.parallelism > 1
+    private ForkJoinPool transformPool;
+
+    // Import batches running on this instance, so a STAGED file of one of them is not taken for an interrupted import
+    private final Set<String> runningBatches = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void startTransformPool() {
+        if (transformParallelism > 1) {
+            transformPool = new ForkJoinPool(transformParallelism);
+        }
+    }
+
+    @PreDestroy
+    public void stopTransformPool() {
+        if (transformPool != null) {
+            transformPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Process and load a file through the ETL pipeline, reporting progress and
+     * honouring cancellation requests on the given progress object.
+     * Cancelling removes the rows already staged for this import. With
+     * {@link ImportOptions#isAnalyzeQuality()} the data quality report is built
+     * from the same pass that stages the rows, and the import is aborted if the
+     * share of valid rows drops below {@link ImportOptions#getMinValidPercent()}.
+     */
+    public DataImportResult processAndLoadFile(Resource source, String fileName, ImportProgress progress,
+                                               ImportOptions options) {
+        log.info("Starting ETL process for file: {}", fileName);
 
         DataImportResult result = DataImportResult.builder()
-                .fileName(file.getOriginalFilename())
+                .fileName(fileName)
+                .importBatchId(UUID.randomUUID().toString())
                 .success(false)
                 .build();
 
+        boolean staged = false;
+        runningBatches.add(result.getImportBatchId());
         try {
             // Validate file first
-            if (file.isEmpty()) {
+            if (source.contentLength() == 0) {
                 throw new IllegalArgumentException("File is empty");
             }
 
@@ -64,491 +229,1695 @@ public class DataImportService {
                 throw new IllegalStateException("Cannot connect to PostgreSQL. Please ensure PostgreSQL is running on localhost:5432");
             }
 
+            // Skip an exact re-upload of a file that was already imported. Files on disk (uploads
+            // are spooled to one) are hashed in a first pass, before anything is parsed or staged.
+            if (deduplicate && source.isFile()) {
+                result.setFileDigest(computeFileDigest(source));
+                if (isKnownFile(result, fileName, progress)) {
+                    return result;
+                }
+                recordStagedFile(result, fileName, source.contentLength());
+            }
+
             // Step 1: Extract and Load to MongoDB (Raw Data)
-            List<RawTransaction> rawTransactions = extractAndLoadToMongo(file);
-            result.setRawRecordsLoaded(rawTransactions.size());
-            log.info("Step 1 (E,L): Loaded {} raw records to MongoDB", rawTransactions.size());
+            staged = true;
+            extractAndLoadToMongo(source, fileName, result, progress, options);
+            log.info("Step 1 (E,L): Loaded {} raw records to MongoDB ({} of {} bytes read, {} duplicate rows skipped)",
+                    result.getRawRecordsLoaded(), result.getBytesRead(), result.getFileSize(),
+                    result.getDuplicateRowsSkipped());
+            if (deduplicate && !source.isFile()) {
+                // Other sources can only be read once, so they are hashed by the extract itself
+                // and a known file is recognised afterwards; its rows were dropped as duplicates
+                if (isKnownFile(result, fileName, progress)) {
+                    rawTransactionRepository.deleteByImportBatchId(result.getImportBatchId());
+                    rejectedTransactionRepository.deleteByImportBatchId(result.getImportBatchId());
+                    result.setRawRecordsLoaded(0);
+                    result.setRowsRejected(0);
+                    result.setRejectedByReason(null);
+                    return result;
+                }
+                recordStagedFile(result, fileName, result.getFileSize());
+            }
 
             // Step 2: Transform and Load to PostgreSQL (Clean Data)
-            transformAndLoadToPostgres(result);
+            transformAndLoadToPostgres(result.getImportBatchId(), result, progress);
             log.info("Step 2 (T,L): Processed data to PostgreSQL");
+            markFileCompleted(result.getImportBatchId());
+            progress.startPhase(ImportProgress.Phase.DONE, 0);
 
             result.setSuccess(true);
             result.setMessage(String.format(
-                "Successfully loaded %d raw records to MongoDB. " +
+                "Successfully loaded %d raw records to MongoDB (%d duplicate rows skipped). " +
                 "Processed %d customers, %d products, %d orders, %d order items to PostgreSQL. " +
-                "Errors: %d",
+                "Errors: %d, rejected rows: %d",
                 result.getRawRecordsLoaded(),
+                result.getDuplicateRowsSkipped(),
                 result.getCustomersProcessed(),
                 result.getProductsProcessed(),
                 result.getOrdersProcessed(),
                 result.getOrderItemsProcessed(),
-                result.getErrorCount()
+                result.getErrorCount(),
+                result.getRowsRejected()
             ));
 
+        } catch (CancellationException e) {
+            handleCancellation(result);
+        } catch (QualityThresholdException e) {
+            log.warn("Import of {} aborted: {}", fileName, e.getMessage());
+            rawTransactionRepository.deleteByImportBatchId(result.getImportBatchId());
+            rejectedTransactionRepository.deleteByImportBatchId(result.getImportBatchId());
+            result.setQualityReport(e.getReport());
+            result.setSuccess(false);
+            result.setMessage(e.getMessage());
         } catch (IllegalArgumentException | IllegalStateException e) {
             log.error("Validation error: {}", e.getMessage());
             result.setSuccess(false);
             result.setMessage(e.getMessage());
+            discardFailedBatch(staged, result.getImportBatchId());
         } catch (Exception e) {
             log.error("Error during ETL process", e);
             result.setSuccess(false);
             result.setMessage("Error: " + e.getMessage() + ". Please check server logs for details.");
+            discardFailedBatch(staged, result.getImportBatchId());
+        } finally {
+            runningBatches.remove(result.getImportBatchId());
+        }
+
+        return result;
+    }
+
+    /**
+     * SHA-256 of the file content, hex encoded; read in a separate pass so an
+     * exact duplicate is recognised before anything is staged
+     */
+    private String computeFileDigest(Resource source) throws IOException {
+        MessageDigest digest = RowFingerprinter.sha256();
+        try (InputStream in = source.getInputStream()) {
+            byte[] buffer = new byte[DECOMPRESS_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Look up an earlier import of the file digest on the result. If it completed,
+     * the result is marked as a duplicate and true is returned. A file that is
+     * still STAGED is never replaced while its batch is running here or can be
+     * resumed; only the record of an interrupted batch that cannot be resumed
+     * is discarded, together with its staged rows, so the file can be imported again.
+     */
+    private boolean isKnownFile(DataImportResult result, String fileName, ImportProgress progress) {
+        Optional<ImportedFile> found = importedFileRepository.findById(result.getFileDigest());
+        if (found.isEmpty()) {
+            return false;
+        }
+        ImportedFile previous = found.get();
+        String previousBatchId = previous.getImportBatchId();
+        Optional<ImportCheckpoint> checkpoint = importCheckpointRepository.findById(previousBatchId);
+        if (!FILE_COMPLETED.equals(previous.getStatus())) {
+            if (runningBatches.contains(previousBatchId)) {
+                throw new IllegalStateException("This file is being imported right now (batch " + previousBatchId + ")");
+            }
+            boolean loaded = checkpoint.isPresent() && CHECKPOINT_COMPLETED.equals(checkpoint.get().getStatus());
+            if (!loaded && checkpoint.isPresent() && commitInvoices > 0) {
+                throw new IllegalStateException("This file was already staged by import batch " + previousBatchId
+                        + ", which did not complete. Resume it (POST /api/admin/jobs/resume/" + previousBatchId
+                        + ") instead of importing the file again.");
+            }
+            if (!loaded) {
+                log.info("Discarding import batch {} of {}: it was interrupted and cannot be resumed",
+                        previousBatchId, previous.getFileName());
+                rawTransactionRepository.deleteByImportBatchId(previousBatchId);
+                rejectedTransactionRepository.deleteByImportBatchId(previousBatchId);
+                checkpoint.ifPresent(importCheckpointRepository::delete);
+                importedFileRepository.delete(previous);
+                return false;
+            }
+            // Its last chunk was committed but the file was not marked completed yet
+            markFileCompleted(previousBatchId);
+        }
+
+        log.info("File {} is identical to {} imported at {} (batch {}), skipping",
+                fileName, previous.getFileName(), previous.getImportedAt(), previousBatchId);
+        progress.startPhase(ImportProgress.Phase.DONE, 0);
+        result.setDuplicateFile(true);
+        result.setSuccess(true);
+        result.setMessage("This file was already imported (batch " + previousBatchId + "). Nothing new to load.");
+        return true;
+    }
+
+    private void recordStagedFile(DataImportResult result, String fileName, long fileSize) {
+        importedFileRepository.save(new ImportedFile(result.getFileDigest(), fileName, fileSize,
+                result.getImportBatchId(), FILE_STAGED, LocalDateTime.now()));
+    }
+
+    /**
+     * Resume a chunked import from its last committed checkpoint. The raw rows
+     * are still staged in MongoDB, so only the remaining invoices are transformed
+     * and loaded; counters on the result cover this run only.
+     */
+    public DataImportResult resumeImport(String importBatchId, ImportProgress progress) {
+        DataImportResult result = DataImportResult.builder()
+                .importBatchId(importBatchId)
+                .success(false)
+                .build();
+
+        runningBatches.add(importBatchId);
+        try {
+            ImportCheckpoint checkpoint = importCheckpointRepository.findById(importBatchId)
+                    .orElseThrow(() -> new IllegalArgumentException("No checkpoint found for import batch " + importBatchId));
+            if (CHECKPOINT_COMPLETED.equals(checkpoint.getStatus())) {
+                throw new IllegalStateException("Import batch " + importBatchId + " is already completed");
+            }
+            if (commitInvoices <= 0) {
+                throw new IllegalStateException("Resuming requires chunked commits (etl.load.commit-invoices > 0)");
+            }
+            result.setFileName(checkpoint.getFileName());
+            log.info("Resuming import batch {} ({}) after invoice {}",
+                    importBatchId, checkpoint.getFileName(), checkpoint.getLastInvoiceNo());
+
+            transformAndLoadToPostgres(importBatchId, result, progress);
+            markFileCompleted(importBatchId);
+            progress.startPhase(ImportProgress.Phase.DONE, 0);
+
+            result.setSuccess(true);
+            result.setMessage(String.format(
+                "Resumed import. Processed %d customers, %d products, %d orders, %d order items to PostgreSQL. " +
+                "Errors: %d",
+                result.getCustomersProcessed(),
+                result.getProductsProcessed(),
+                result.getOrdersProcessed(),
+                result.getOrderItemsProcessed(),
+                result.getErrorCount()
+            ));
+
+        } catch (CancellationException e) {
+            handleCancellation(result);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.error("Validation error: {}", e.getMessage());
+            result.setMessage(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error while resuming import batch {}", importBatchId, e);
+            result.setMessage("Error: " + e.getMessage() + ". Please check server logs for details.");
+        } finally {
+            runningBatches.remove(importBatchId);
+        }
+
+        return result;
+    }
+
+    /**
+     * Re-run the rejected rows of an import batch (optionally only one reason
+     * code) through the transform, e.g. after the rows or the mapping were fixed.
+     * Rows that load are removed from transactions_rejected; rows rejected
+     * again replace their previous entry.
+     */
+    public DataImportResult replayRejected(String importBatchId, String reason, ImportProgress progress) {
+        DataImportResult result = DataImportResult.builder()
+                .importBatchId(importBatchId)
+                .success(false)
+                .build();
+
+        try {
+            List<RejectedTransaction> rejectedRows = reason == null
+                    ? rejectedTransactionRepository.findByImportBatchIdOrderByRowNumberAsc(importBatchId)
+                    : rejectedTransactionRepository.findByImportBatchIdAndReasonOrderByRowNumberAsc(importBatchId, reason);
+            if (rejectedRows.isEmpty()) {
+                throw new IllegalArgumentException("No rejected rows found for import batch " + importBatchId);
+            }
+            result.setFileName(rejectedRows.get(0).getFileName());
+            log.info("Replaying {} rejected rows of import batch {}", rejectedRows.size(), importBatchId);
+
+            List<RawTransaction> rows = new ArrayList<>(rejectedRows.size());
+            for (RejectedTransaction rejected : rejectedRows) {
+                rows.add(toRawTransaction(rejected));
+            }
+
+            RejectedRowCollector rejectedAgain = new RejectedRowCollector(mongoStagingLoader, importChunkSize, true);
+            progress.startPhase(ImportProgress.Phase.TRANSFORM, rows.size());
+            try {
+                transformAndLoadRows(rows, result, progress, sniffDateLayout(rows), null, rejectedAgain);
+            } finally {
+                recordRejected(rejectedAgain, result, "Replay");
+            }
+
+            Set<String> stillRejected = rejectedAgain.getRejectedIds();
+            List<String> loadedIds = rejectedRows.stream()
+                    .map(RejectedTransaction::getId)
+                    .filter(id -> !stillRejected.contains(id))
+                    .toList();
+            rejectedTransactionRepository.deleteAllById(loadedIds);
+            progress.startPhase(ImportProgress.Phase.DONE, 0);
+
+            result.setSuccess(true);
+            result.setMessage(String.format(
+                "Replayed %d rejected rows: %d loaded, %d rejected again. " +
+                "Processed %d customers, %d products, %d orders, %d order items to PostgreSQL.",
+                rows.size(),
+                loadedIds.size(),
+                result.getRowsRejected(),
+                result.getCustomersProcessed(),
+                result.getProductsProcessed(),
+                result.getOrdersProcessed(),
+                result.getOrderItemsProcessed()
+            ));
+
+        } catch (CancellationException e) {
+            result.setMessage("Replay cancelled");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.error("Validation error: {}", e.getMessage());
+            result.setMessage(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error while replaying rejected rows of import batch {}", importBatchId, e);
+            result.setMessage("Error: " + e.getMessage() + ". Please check server logs for details.");
         }
 
         return result;
     }
 
+    private RawTransaction toRawTransaction(RejectedTransaction rejected) {
+        RawTransaction raw = new RawTransaction();
+        raw.setInvoiceNo(rejected.getInvoiceNo());
+        raw.setStockCode(rejected.getStockCode());
+        raw.setDescription(rejected.getDescription());
+        raw.setQuantity(rejected.getQuantity());
+        raw.setInvoiceDate(rejected.getInvoiceDate());
+        raw.setUnitPrice(rejected.getUnitPrice());
+        raw.setCustomerId(rejected.getCustomerId());
+        raw.setCountry(rejected.getCountry());
+        raw.setImportedAt(LocalDateTime.now());
+        raw.setFileName(rejected.getFileName());
+        raw.setImportBatchId(rejected.getImportBatchId());
+        raw.setRowNumber(rejected.getRowNumber());
+        return raw;
+    }
+
+    /**
+     * Remove the staged rows of a cancelled import, unless chunks of it were
+     * already committed; those stay staged so the import can be resumed
+     */
+    private void handleCancellation(DataImportResult result) {
+        String importBatchId = result.getImportBatchId();
+        Optional<ImportCheckpoint> checkpoint = importCheckpointRepository.findById(importBatchId);
+        if (checkpoint.isPresent() && checkpoint.get().getChunksCommitted() > 0) {
+            log.info("Import batch {} cancelled after {} committed chunks, keeping staged rows for resume",
+                    importBatchId, checkpoint.get().getChunksCommitted());
+            checkpoint.get().setStatus(CHECKPOINT_FAILED);
+            checkpoint.get().setUpdatedAt(LocalDateTime.now());
+            importCheckpointRepository.save(checkpoint.get());
+            result.setMessage("Import cancelled; committed chunks were kept and the import can be resumed");
+        } else {
+            log.info("Import batch {} cancelled, removing staged rows", importBatchId);
+            rawTransactionRepository.deleteByImportBatchId(importBatchId);
+            rejectedTransactionRepository.deleteByImportBatchId(importBatchId);
+            checkpoint.ifPresent(importCheckpointRepository::delete);
+            importedFileRepository.findByImportBatchId(importBatchId).ifPresent(importedFileRepository::delete);
+            result.setMessage("Import cancelled");
+        }
+        result.setSuccess(false);
+    }
+
     /**
-     * Step 1: Extract data from file and Load to MongoDB (Raw staging)
+     * With deduplication on, rows staged by a failed import would make a retry
+     * skip them as duplicates, so they are removed unless committed chunks need
+     * them for a resume
      */
-    private List<RawTransaction> extractAndLoadToMongo(MultipartFile file) throws Exception {
-        String fileName = file.getOriginalFilename();
-        List<RawTransaction> rawTransactions = new ArrayList<>();
+    private void discardFailedBatch(boolean staged, String importBatchId) {
+        if (!staged || !deduplicate) return;
+        try {
+            Optional<ImportCheckpoint> checkpoint = importCheckpointRepository.findById(importBatchId);
+            if (checkpoint.isPresent() && checkpoint.get().getChunksCommitted() > 0) {
+                return;
+            }
+            log.info("Removing rows staged by failed import batch {}", importBatchId);
+            rawTransactionRepository.deleteByImportBatchId(importBatchId);
+            rejectedTransactionRepository.deleteByImportBatchId(importBatchId);
+            checkpoint.ifPresent(importCheckpointRepository::delete);
+            importedFileRepository.findByImportBatchId(importBatchId).ifPresent(importedFileRepository::delete);
+        } catch (Exception e) {
+            log.warn("Could not remove rows staged by failed import batch {}: {}", importBatchId, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the remaining rejected rows and add the per-reason counts to the result;
+     * one summary line replaces a log line per rejected row or defaulted value
+     */
+    private void recordRejected(RejectedRowCollector rejected, DataImportResult result, String phase) {
+        rejected.flush();
+        Map<String, Long> defaulted = rejected.getDefaultedCounts();
+        if (!defaulted.isEmpty()) {
+            result.setDefaultedByReason(mergeCounts(result.getDefaultedByReason(), defaulted));
+            log.warn("{} loaded {} unparseable values with a default: {}", phase,
+                    defaulted.values().stream().mapToLong(Long::longValue).sum(), defaulted);
+        }
+
+        Map<String, Long> counts = rejected.getCounts();
+        if (counts.isEmpty()) return;
+
+        result.setRejectedByReason(mergeCounts(result.getRejectedByReason(), counts));
+        result.setRowsRejected(result.getRowsRejected() + (int) rejected.getTotal());
+        log.info("{} rejected {} rows to transactions_rejected: {}", phase, rejected.getTotal(), counts);
+    }
+
+    private static Map<String, Long> mergeCounts(Map<String, Long> previous, Map<String, Long> counts) {
+        Map<String, Long> total = previous != null ? new TreeMap<>(previous) : new TreeMap<>();
+        counts.forEach((reason, count) -> total.merge(reason, count, Long::sum));
+        return total;
+    }
+
+    private void markFileCompleted(String importBatchId) {
+        importedFileRepository.findByImportBatchId(importBatchId).ifPresent(file -> {
+            file.setStatus(FILE_COMPLETED);
+            importedFileRepository.save(file);
+        });
+    }
+
+    /**
+     * Step 1: Extract data from file and Load to MongoDB (Raw staging).
+     * Rows are streamed in chunks of {@code etl.import.chunk-size}, so heap usage
+     * does not grow with the file size.
+     *
+     * The source is opened once and the bytes read are reported on the result.
+     * With deduplication on, a source that was not hashed before the extract
+     * (see {@link #computeFileDigest}) is hashed from the same read and the
+     * SHA-256 is set on the result.
+     */
+    private void extractAndLoadToMongo(Resource source, String fileName, DataImportResult result,
+                                       ImportProgress progress, ImportOptions options) throws Exception {
         LocalDateTime importTime = LocalDateTime.now();
 
         if (fileName == null) {
             throw new IllegalArgumentException("File name is null");
         }
 
-        if (fileName.toLowerCase().endsWith(".csv")) {
-            rawTransactions = parseCSV(file, fileName, importTime);
-        } else if (fileName.toLowerCase().endsWith(".xlsx") || fileName.toLowerCase().endsWith(".xls")) {
-            rawTransactions = parseExcel(file, fileName, importTime);
-        } else {
-            throw new IllegalArgumentException("Unsupported file format. Only CSV and Excel files are supported.");
+        RawChunkWriter writer = new RawChunkWriter(result.getImportBatchId(), progress);
+        writer.setFingerprinter(deduplicate ? new RowFingerprinter() : null);
+        writer.setDateParser(typedStaging ? new ImportDateParser() : null);
+        if (options.isAnalyzeQuality()) {
+            writer.setQualityCheck(new DataQualityAccumulator(fileName), options.getMinValidPercent());
+        }
+        long fileSize = source.contentLength();
+        progress.startPhase(ImportProgress.Phase.EXTRACT, 0);
+        if (pipelineEnabled) {
+            writer.startPipeline(pipelineQueueCapacity);
+        }
+
+        // CSVs that were placed on the server's disk (import-local, drop folder) are split by the
+        // byte-level channel reader and decoded as UTF-8; uploads keep the stream parser
+        if (options.isReadInPlace() && fileName.toLowerCase().endsWith(".csv") && source.isFile()) {
+            try (writer; ChannelCsvReader reader = new ChannelCsvReader(source.getFile().toPath())) {
+                progress.trackBytes(reader::getPosition, fileSize);
+                parseLocalCSV(reader, fileName, importTime, writer);
+                finishExtract(writer, result, reader.getPosition(), fileSize, null);
+            }
+            return;
+        }
+
+        // POI needs random access, so an xlsx on disk is opened by path and the stream is never
+        // read. With deduplication on, computeFileDigest has already read the file once; that is
+        // the only other read. Bytes are not tracked while POI parses, so there is no ETA until then.
+        if (fileName.toLowerCase().endsWith(".xlsx") && source.isFile()) {
+            try (writer) {
+                parseExcel(null, source.getFile().toPath(), fileName, importTime, writer);
+                finishExtract(writer, result, fileSize, fileSize, null);
+            }
+            return;
         }
 
-        // Save all raw transactions to MongoDB
-        return rawTransactionRepository.saveAll(rawTransactions);
+        // Files on disk were hashed before the extract; other sources are hashed as they are read
+        MessageDigest fileDigest = deduplicate && result.getFileDigest() == null ? RowFingerprinter.sha256() : null;
+        InputStream sourceStream = source.getInputStream();
+        if (fileDigest != null) {
+            sourceStream = new DigestInputStream(sourceStream, fileDigest);
+        }
+        try (writer; CountingInputStream in = new CountingInputStream(sourceStream)) {
+            progress.trackBytes(in::getCount, fileSize);
+
+            // Compressed files are inflated on the fly, straight into the CSV parser
+            if (fileName.toLowerCase().endsWith(".csv.gz")) {
+                parseCSV(new GZIPInputStream(in, DECOMPRESS_BUFFER_SIZE), fileName, importTime, writer);
+            } else if (fileName.toLowerCase().endsWith(".csv.zst")) {
+                parseCSV(new ZstdInputStream(in), fileName, importTime, writer);
+            } else if (fileName.toLowerCase().endsWith(".zip")) {
+                parseZip(in, fileName, importTime, writer);
+            } else if (fileName.toLowerCase().endsWith(".csv")) {
+                parseCSV(in, fileName, importTime, writer);
+            } else if (fileName.toLowerCase().endsWith(".xlsx")) {
+                parseExcel(in, null, fileName, importTime, writer);
+            } else if (fileName.toLowerCase().endsWith(".xls")) {
+                throw new IllegalArgumentException("Legacy .xls files are not supported. Please save the file as .xlsx or CSV.");
+            } else {
+                throw new IllegalArgumentException("Unsupported file format. Only CSV, Excel and compressed CSV (.csv.gz, .csv.zst, .zip) files are supported.");
+            }
+
+            if (fileDigest != null) {
+                // Parsers may stop before the end (zip central directory), but the digest covers the whole file
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            finishExtract(writer, result, in.getCount(), fileSize, fileDigest);
+        }
+    }
+
+    private void finishExtract(RawChunkWriter writer, DataImportResult result, long bytesRead, long fileSize,
+                               MessageDigest fileDigest) {
+        // Save the last partial chunk
+        writer.checkQuality(true);
+        writer.finish();
+        result.setQualityReport(writer.getQualityReport());
+        recordRejected(writer.getRejected(), result, "Extract");
+        result.setRawRecordsLoaded(writer.getWritten());
+        result.setDuplicateRowsSkipped(writer.getDuplicatesSkipped());
+        log.info("Staged {} raw records at {} docs/sec", writer.getWritten(), writer.getDocsPerSecond());
+        result.setBytesRead(bytesRead);
+        result.setFileSize(fileSize);
+        if (fileDigest != null) {
+            result.setFileDigest(HexFormat.of().formatHex(fileDigest.digest()));
+        }
     }
 
     /**
-     * Parse CSV file and extract raw data
+     * Buffers raw rows, stamps them with the import batch and writes them to
+     * MongoDB one chunk at a time. With a fingerprinter, rows that are already
+     * staged are dropped before each write. With the pipeline started, full
+     * chunks are written by a separate stage while parsing continues.
      */
-    private List<RawTransaction> parseCSV(MultipartFile file, String fileName, LocalDateTime importTime) throws Exception {
-        List<RawTransaction> rawTransactions = new ArrayList<>();
+    private class RawChunkWriter implements AutoCloseable {
+        private final String importBatchId;
+        private final ImportProgress progress;
+        private List<RawTransaction> chunk = new ArrayList<>(importChunkSize);
+        private PipelineStage<List<RawTransaction>> mongoStage;
+        private final RejectedRowCollector rejected = new RejectedRowCollector(mongoStagingLoader, importChunkSize, false);
+        private RowFingerprinter fingerprinter;
+        private ImportDateParser dateParser;
+        private DataQualityAccumulator quality;
+        private Double minValidPercent;
+        private int written = 0;
+        private int duplicatesSkipped = 0;
+        private long insertNanos = 0;
+
+        RawChunkWriter(String importBatchId, ImportProgress progress) {
+            this.importBatchId = importBatchId;
+            this.progress = progress;
+        }
+
+        /**
+         * Write chunks on a pipeline stage; the parser blocks once queueCapacity chunks are waiting
+         */
+        void startPipeline(int queueCapacity) {
+            mongoStage = new PipelineStage<>("mongo-write", queueCapacity, List::size, this::writeChunk,
+                    Runnable::run);
+            progress.addStage(mongoStage);
+        }
+
+        void setFingerprinter(RowFingerprinter fingerprinter) {
+            this.fingerprinter = fingerprinter;
+        }
+
+        /**
+         * Build a quality report from the staged rows, optionally aborting below a valid-row threshold
+         */
+        void setQualityCheck(DataQualityAccumulator quality, Double minValidPercent) {
+            this.quality = quality;
+            this.minValidPercent = minValidPercent;
+        }
+
+        /**
+         * Called for every header read (a zip archive has one per entry)
+         */
+        void startColumns(List<String> headerNames, TransactionColumnMapper columns) {
+            if (quality != null) {
+                quality.startColumns(headerNames, columns);
+            }
+        }
+
+        /**
+         * Abort once the valid-row share is below the threshold; before the end of
+         * the file only after a minimum sample, so a bad first row does not decide
+         */
+        void checkQuality(boolean endOfFile) {
+            if (quality == null || minValidPercent == null) return;
+            if (!endOfFile && quality.getTotalRows() < QUALITY_MIN_SAMPLE_ROWS) return;
+            if (quality.getTotalRows() > 0 && quality.getValidPercent() < minValidPercent) {
+                throw new QualityThresholdException(String.format(
+                        "Import aborted: %.1f%% of %d rows are valid, below the required %.1f%%",
+                        quality.getValidPercent(), quality.getTotalRows(), minValidPercent),
+                        quality.buildReport());
+            }
+        }
+
+        DataQualityReport getQualityReport() {
+            return quality != null ? quality.buildReport() : null;
+        }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            // Read first line to detect delimiter
-            String firstLine = reader.readLine();
-            if (firstLine == null || firstLine.trim().isEmpty()) {
-                throw new IllegalArgumentException("CSV file is empty or has no header");
+        /**
+         * Send a row that could not be read to transactions_rejected
+         */
+        void reject(RawTransaction raw, String reason, String message) {
+            raw.setImportBatchId(importBatchId);
+            rejected.reject(raw, reason, message);
+        }
+
+        RejectedRowCollector getRejected() {
+            return rejected;
+        }
+
+        /**
+         * With a date parser, quantity, price and date are also staged as typed values
+         */
+        void setDateParser(ImportDateParser dateParser) {
+            this.dateParser = dateParser;
+        }
+
+        void add(RawTransaction raw) {
+            raw.setImportBatchId(importBatchId);
+            if (fingerprinter != null) {
+                raw.setRowFingerprint(fingerprinter.fingerprint(raw.getInvoiceNo(), raw.getStockCode(),
+                        raw.getQuantity(), raw.getInvoiceDate(), raw.getUnitPrice()));
+            }
+            if (dateParser != null) {
+                stageTypedValues(raw);
             }
+            if (quality != null) {
+                long rowNumber = raw.getRowNumber() != null ? raw.getRowNumber() : 0;
+                quality.accept(rowNumber, raw.getInvoiceNo(), raw.getStockCode(), raw.getDescription(),
+                        raw.getQuantity(), raw.getInvoiceDate(), raw.getUnitPrice(), raw.getCustomerId(),
+                        raw.getCountry());
+            }
+            chunk.add(raw);
+            progress.rowProcessed();
+            if (chunk.size() >= importChunkSize) {
+                progress.checkCancelled();
+                checkQuality(false);
+                flush();
+            }
+        }
 
-            // Detect delimiter (comma or semicolon)
-            char delimiter = ',';
-            if (firstLine.contains(";")) {
-                delimiter = ';';
-                log.info("Detected semicolon (;) as CSV delimiter");
+        void flush() {
+            if (chunk.isEmpty()) return;
+            List<RawTransaction> full = chunk;
+            chunk = new ArrayList<>(importChunkSize);
+            if (mongoStage != null) {
+                mongoStage.submit(full);
             } else {
-                log.info("Using comma (,) as CSV delimiter");
+                writeChunk(full);
+            }
+        }
+
+        /**
+         * Write the last chunk and wait until every chunk is in MongoDB
+         */
+        void finish() {
+            flush();
+            if (mongoStage != null) {
+                mongoStage.finish();
+            }
+        }
+
+        /**
+         * Stop the write stage if the extract did not finish
+         */
+        @Override
+        public void close() {
+            if (mongoStage != null) {
+                mongoStage.abort();
+            }
+        }
+
+        // Runs on the write stage when the pipeline is on; the counters are read after finish()
+        private void writeChunk(List<RawTransaction> rows) {
+            if (fingerprinter != null) {
+                removeDuplicates(rows);
+            }
+            long start = System.nanoTime();
+            int inserted = mongoStagingLoader.insert(rows);
+            insertNanos += System.nanoTime() - start;
+            duplicatesSkipped += rows.size() - inserted;
+            written += inserted;
+            log.info("Loaded {} raw records to MongoDB ({} docs/sec)", written, getDocsPerSecond());
+        }
+
+        private void stageTypedValues(RawTransaction raw) {
+            int validity = 0;
+            long quantity = NumericFieldScanner.parseQuantity(raw.getQuantity());
+            if (quantity != NumericFieldScanner.INVALID) {
+                raw.setQuantityValue((int) quantity);
+                validity |= RawTransaction.QUANTITY_VALID;
+            }
+            long cents = NumericFieldScanner.parsePriceCents(raw.getUnitPrice());
+            if (cents != NumericFieldScanner.INVALID) {
+                raw.setUnitPriceCents(cents);
+                validity |= RawTransaction.UNIT_PRICE_VALID;
+            }
+            // Ambiguous slash dates seen before the layout is known are left to the transform, which sniffs it up front
+            LocalDateTime invoiceDate = dateParser.parse(raw.getInvoiceDate());
+            if (invoiceDate != null && dateParser.isSettled(raw.getInvoiceDate())) {
+                raw.setInvoiceDateValue(invoiceDate);
+                validity |= RawTransaction.INVOICE_DATE_VALID;
+            }
+            raw.setTypedValidity(validity);
+        }
+
+        private void removeDuplicates(List<RawTransaction> rows) {
+            Set<String> seen = new HashSet<>(rows.size() * 2);
+            for (RawTransaction raw : rows) {
+                seen.add(raw.getRowFingerprint());
+            }
+            for (RawTransaction existing : rawTransactionRepository.findFingerprintsIn(seen)) {
+                seen.remove(existing.getRowFingerprint());
             }
+            // seen now holds the new fingerprints; each may be written once
+            int before = rows.size();
+            rows.removeIf(raw -> !seen.remove(raw.getRowFingerprint()));
+            duplicatesSkipped += before - rows.size();
+        }
 
-            // Create CSVFormat with detected delimiter
-            CSVFormat csvFormat = CSVFormat.DEFAULT
-                    .builder()
-                    .setDelimiter(delimiter)
-                    .setHeader()
-                    .setSkipHeaderRecord(true)
-                    .setIgnoreHeaderCase(true)
-                    .setTrim(true)
-                    .setIgnoreEmptyLines(true)
-                    .build();
+        int getWritten() {
+            return written;
+        }
 
-            // Reset reader to beginning
-            reader.close();
+        int getDuplicatesSkipped() {
+            return duplicatesSkipped;
         }
 
-        // Re-open file and parse with correct delimiter
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
-             CSVParser csvParser = CSVParser.parse(reader, detectCSVFormat(file))) {
+        /**
+         * Insert throughput, counting only time spent in MongoDB bulk writes
+         */
+        long getDocsPerSecond() {
+            return insertNanos > 0 ? written * 1_000_000_000L / insertNanos : 0;
+        }
+    }
+
+    /**
+     * Parse CSV file and pass each raw row to the chunk writer.
+     * The stream is read exactly once: the dialect is detected from a buffered
+     * prefix and parsing continues from the same reader.
+     */
+    private void parseCSV(InputStream in, String fileName, LocalDateTime importTime, RawChunkWriter writer) throws Exception {
+        int parsedCount = 0;
 
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in), CsvHeader.BUFFER_SIZE);
+             CSVParser csvParser = CSVParser.parse(reader, detectCSVFormat(reader))) {
+
+            TransactionColumnMapper columns = compileColumns(csvParser.getHeaderNames(), fileName, writer);
             int rowNumber = 1; // Start after header
             for (CSVRecord record : csvParser) {
                 rowNumber++;
+                RawTransaction raw = new RawTransaction();
                 try {
-                    RawTransaction raw = new RawTransaction();
-                    raw.setInvoiceNo(getRecordValue(record, "InvoiceNo"));
-                    raw.setStockCode(getRecordValue(record, "StockCode"));
-                    raw.setDescription(getRecordValue(record, "Description"));
-                    raw.setQuantity(getRecordValue(record, "Quantity"));
-                    raw.setInvoiceDate(getRecordValue(record, "InvoiceDate"));
-                    raw.setUnitPrice(getRecordValue(record, "UnitPrice"));
-                    raw.setCustomerId(getRecordValue(record, "CustomerID"));
-                    raw.setCountry(getRecordValue(record, "Country"));
+                    raw.setInvoiceNo(columns.get(record, Column.INVOICE_NO));
+                    raw.setStockCode(columns.get(record, Column.STOCK_CODE));
+                    raw.setDescription(columns.get(record, Column.DESCRIPTION));
+                    raw.setQuantity(columns.get(record, Column.QUANTITY));
+                    raw.setInvoiceDate(columns.get(record, Column.INVOICE_DATE));
+                    raw.setUnitPrice(columns.get(record, Column.UNIT_PRICE));
+                    raw.setCustomerId(columns.get(record, Column.CUSTOMER_ID));
+                    raw.setCountry(columns.get(record, Column.COUNTRY));
                     raw.setImportedAt(importTime);
                     raw.setFileName(fileName);
                     raw.setRowNumber(rowNumber);
+                } catch (Exception e) {
+                    raw.setFileName(fileName);
+                    raw.setRowNumber(rowNumber);
+                    writer.reject(raw, RejectedTransaction.PARSE_ERROR, e.getMessage());
+                    continue;
+                }
 
-                    rawTransactions.add(raw);
+                // Outside the row try-block so MongoDB write failures abort the import
+                writer.add(raw);
+                parsedCount++;
 
-                    // Log progress for large files
-                    if (rowNumber % 10000 == 0) {
-                        log.info("Parsed {} rows from CSV", rowNumber);
-                    }
-                } catch (Exception e) {
-                    log.warn("Error parsing CSV row {}: {}", rowNumber, e.getMessage());
+                // Log progress for large files
+                if (rowNumber % 10000 == 0) {
+                    log.info("Parsed {} rows from CSV", rowNumber);
                 }
             }
         }
 
-        log.info("Successfully parsed {} transactions from CSV file", rawTransactions.size());
-        return rawTransactions;
+        log.info("Successfully parsed {} transactions from CSV file", parsedCount);
     }
 
     /**
-     * Detect CSV format by reading first line
+     * Parse every .csv entry of a zip archive as it is read from the stream.
+     * Each entry has its own header; rows are tagged with "archive.zip!entry.csv".
      */
-    private CSVFormat detectCSVFormat(MultipartFile file) throws Exception {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String firstLine = reader.readLine();
+    private void parseZip(InputStream in, String fileName, LocalDateTime importTime, RawChunkWriter writer) throws Exception {
+        int csvEntries = 0;
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || !entry.getName().toLowerCase().endsWith(".csv")) {
+                    log.warn("Skipping zip entry {} in {}: only .csv entries are imported", entry.getName(), fileName);
+                    continue;
+                }
+                csvEntries++;
+                log.info("Importing zip entry {} from {}", entry.getName(), fileName);
+                // parseCSV closes its reader; that must not close the archive
+                parseCSV(StreamUtils.nonClosing(zip), fileName + "!" + entry.getName(), importTime, writer);
+            }
+        }
+        if (csvEntries == 0) {
+            throw new IllegalArgumentException("Zip archive contains no CSV files");
+        }
+    }
 
-            if (firstLine == null || firstLine.trim().isEmpty()) {
-                throw new IllegalArgumentException("CSV file is empty");
+    /**
+     * Parse a CSV file on the server's disk with the channel reader and
+     * pass each raw row to the chunk writer; same header handling and row
+     * numbering as {@link #parseCSV}
+     */
+    private void parseLocalCSV(ChannelCsvReader reader, String fileName, LocalDateTime importTime,
+                               RawChunkWriter writer) throws Exception {
+        CsvHeader header = CsvHeader.parse(reader.readHeaderLine());
+        logHeader(header);
+        char delimiter = header.getDelimiter();
+        TransactionColumnMapper columns = compileColumns(header.getNames(), fileName, writer);
+
+        int[] parsedCount = new int[1];
+        reader.read(delimiter, (recordNumber, fields, error) -> {
+            if (recordNumber == 1) {
+                return; // Header
+            }
+            RawTransaction raw = new RawTransaction();
+            try {
+                raw.setInvoiceNo(columns.get(fields, Column.INVOICE_NO));
+                raw.setStockCode(columns.get(fields, Column.STOCK_CODE));
+                raw.setDescription(columns.get(fields, Column.DESCRIPTION));
+                raw.setQuantity(columns.get(fields, Column.QUANTITY));
+                raw.setInvoiceDate(columns.get(fields, Column.INVOICE_DATE));
+                raw.setUnitPrice(columns.get(fields, Column.UNIT_PRICE));
+                raw.setCustomerId(columns.get(fields, Column.CUSTOMER_ID));
+                raw.setCountry(columns.get(fields, Column.COUNTRY));
+                if (error != null) {
+                    // Rejected with the best-effort values, so it can be fixed and replayed
+                    throw new IllegalArgumentException(error);
+                }
+                raw.setImportedAt(importTime);
+                raw.setFileName(fileName);
+                raw.setRowNumber(recordNumber);
+            } catch (RuntimeException e) {
+                raw.setFileName(fileName);
+                raw.setRowNumber(recordNumber);
+                writer.reject(raw, RejectedTransaction.PARSE_ERROR, e.getMessage());
+                return;
             }
 
-            // Clean up header line - remove trailing delimiters
-            firstLine = firstLine.replaceAll("[,;\\t]+$", "");
+            // Outside the row try-block so MongoDB write failures abort the import
+            writer.add(raw);
+            parsedCount[0]++;
 
-            // Detect delimiter
-            char delimiter = ',';
-            if (firstLine.contains(";")) {
-                delimiter = ';';
-                log.info("Detected semicolon (;) as CSV delimiter");
-            } else if (firstLine.contains(",")) {
-                delimiter = ',';
-                log.info("Detected comma (,) as CSV delimiter");
-            } else if (firstLine.contains("\t")) {
-                delimiter = '\t';
-                log.info("Detected tab as CSV delimiter");
+            if (recordNumber % 10000 == 0) {
+                log.info("Parsed {} rows from CSV", recordNumber);
             }
+        });
 
-            // Count non-empty headers
-            String[] headers = firstLine.split(String.valueOf(delimiter));
-            List<String> cleanHeaders = new ArrayList<>();
-            for (String header : headers) {
-                if (header != null && !header.trim().isEmpty()) {
-                    cleanHeaders.add(header.trim());
-                }
-            }
+        log.info("Successfully parsed {} transactions from CSV file (read in place)", parsedCount[0]);
+    }
+
+    /**
+     * Detect CSV format from the header line, then rewind the reader so the
+     * parser sees the header again and skips it
+     */
+    private CSVFormat detectCSVFormat(BufferedReader reader) throws Exception {
+        CsvHeader header = CsvHeader.sniff(reader);
+        logHeader(header);
+        return header.toFormat();
+    }
 
-            log.info("Detected {} columns in CSV: {}", cleanHeaders.size(), String.join(", ", cleanHeaders));
+    private void logHeader(CsvHeader header) {
+        log.info("Detected {} columns in CSV (delimiter {}): {}", header.getNames().size(),
+                header.describeDelimiter(), String.join(", ", header.getNames()));
+    }
 
-            return CSVFormat.DEFAULT
-                    .builder()
-                    .setDelimiter(delimiter)
-                    .setHeader(cleanHeaders.toArray(new String[0]))
-                    .setSkipHeaderRecord(true)
-                    .setIgnoreHeaderCase(true)
-                    .setTrim(true)
-                    .setIgnoreEmptyLines(true)
-                    .setIgnoreSurroundingSpaces(true)
-                    .setNullString("")
-                    .setAllowMissingColumnNames(true)
-                    .build();
+    /**
+     * Resolve the transaction columns of a header once; missing columns are
+     * reported here and imported as empty values
+     */
+    private TransactionColumnMapper compileColumns(List<String> headerNames, String fileName, RawChunkWriter writer) {
+        TransactionColumnMapper columns = TransactionColumnMapper.compile(headerNames);
+        if (!columns.getMissingColumns().isEmpty()) {
+            log.warn("File {} has no column for {}; these fields will be empty",
+                    fileName, columns.getMissingColumns().stream().map(Column::getName).toList());
         }
+        writer.startColumns(headerNames, columns);
+        return columns;
     }
 
     /**
-     * Safely get record value by column name
+     * Parse an .xlsx file with the streaming (SAX) reader and pass each raw row
+     * to the chunk writer. The upload is spooled to a temp file because the
+     * OOXML package needs random access to its zip entries.
      */
-    private String getRecordValue(CSVRecord record, String columnName) {
+    private void parseExcel(InputStream in, Path localFile, String fileName, LocalDateTime importTime,
+                            RawChunkWriter writer) throws Exception {
+        // A file already on disk is opened directly (in is not read); only streamed uploads are spooled
+        Path tempFile = localFile != null ? null : Files.createTempFile("import-", ".xlsx");
         try {
-            if (record.isMapped(columnName)) {
-                return record.get(columnName);
-            } else {
-                log.warn("Column '{}' not found in CSV, trying case-insensitive match", columnName);
-                // Try to find column with case-insensitive match
-                for (String header : record.getParser().getHeaderNames()) {
-                    if (header.equalsIgnoreCase(columnName)) {
-                        return record.get(header);
-                    }
+            if (tempFile != null) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Path file = localFile != null ? localFile : tempFile;
+
+            TransactionColumnMapper[] columnsHolder = new TransactionColumnMapper[1];
+            XlsxStreamingReader.read(file.toFile(), (rowNumber, cells) -> {
+                // First row is the header
+                if (columnsHolder[0] == null) {
+                    List<String> headerNames = cells.stream().map(String::trim).toList();
+                    columnsHolder[0] = compileColumns(headerNames, fileName, writer);
+                    return;
                 }
-                return "";
+
+                TransactionColumnMapper columns = columnsHolder[0];
+                RawTransaction raw = new RawTransaction();
+                raw.setInvoiceNo(columns.get(cells, Column.INVOICE_NO));
+                raw.setStockCode(columns.get(cells, Column.STOCK_CODE));
+                raw.setDescription(columns.get(cells, Column.DESCRIPTION));
+                raw.setQuantity(columns.get(cells, Column.QUANTITY));
+                raw.setInvoiceDate(columns.get(cells, Column.INVOICE_DATE));
+                raw.setUnitPrice(columns.get(cells, Column.UNIT_PRICE));
+                raw.setCustomerId(columns.get(cells, Column.CUSTOMER_ID));
+                raw.setCountry(columns.get(cells, Column.COUNTRY));
+                raw.setImportedAt(importTime);
+                raw.setFileName(fileName);
+                raw.setRowNumber(rowNumber);
+
+                writer.add(raw);
+            });
+        } finally {
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
             }
-        } catch (Exception e) {
-            log.warn("Error getting value for column '{}': {}", columnName, e.getMessage());
-            return "";
         }
     }
 
     /**
-     * Parse Excel file and extract raw data
+     * Step 2: Transform raw data and Load to PostgreSQL (Clean data).
+     * Only the rows staged by the given import batch are read, so the cost
+     * depends on the uploaded file rather than on the size of transactions_raw.
+     * Transactions are opened per load (see {@link #loadSegment}), not here.
      */
-    private List<RawTransaction> parseExcel(MultipartFile file, String fileName, LocalDateTime importTime) throws Exception {
-        List<RawTransaction> rawTransactions = new ArrayList<>();
-
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
+    private void transformAndLoadToPostgres(String importBatchId, DataImportResult result, ImportProgress progress) {
+        log.info("Starting transformation and loading to PostgreSQL for batch {}...", importBatchId);
 
-            // Get header row to find column indices
-            Row headerRow = sheet.getRow(0);
-            Map<String, Integer> columnMap = new HashMap<>();
-            for (Cell cell : headerRow) {
-                columnMap.put(cell.getStringCellValue().trim(), cell.getColumnIndex());
+        RejectedRowCollector rejected = new RejectedRowCollector(mongoStagingLoader, importChunkSize, false);
+        try {
+            if (commitInvoices > 0) {
+                transformAndLoadInChunks(importBatchId, result, progress, rejected);
+                return;
             }
 
-            // Process data rows
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
+            long rowCount = countRawRows(importBatchId, null);
+            log.info("Streaming {} raw transactions from MongoDB", rowCount);
+            progress.startPhase(ImportProgress.Phase.TRANSFORM, rowCount);
+
+            // Still one transaction for the whole batch; each segment joins it and is
+            // flushed and cleared, so memory stays flat while the cursor streams
+            transformAndLoadStream(importBatchId, null, Integer.MAX_VALUE, importChunkSize, progress, rejected,
+                    segment -> {
+                        loadSegment(segment, result, null);
+                        entityManager.flush();
+                        entityManager.clear();
+                    },
+                    loop -> transactionTemplate.executeWithoutResult(status -> loop.run()));
+            log.info("Transformation completed. Errors: {}", result.getErrorCount());
+        } finally {
+            // Rows rejected by committed chunks are kept even if a later chunk fails
+            recordRejected(rejected, result, "Transform");
+        }
+    }
 
-                try {
-                    RawTransaction raw = new RawTransaction();
-                    raw.setInvoiceNo(getCellValueAsString(row, columnMap.get("InvoiceNo")));
-                    raw.setStockCode(getCellValueAsString(row, columnMap.get("StockCode")));
-                    raw.setDescription(getCellValueAsString(row, columnMap.get("Description")));
-                    raw.setQuantity(getCellValueAsString(row, columnMap.get("Quantity")));
-                    raw.setInvoiceDate(getCellValueAsString(row, columnMap.get("InvoiceDate")));
-                    raw.setUnitPrice(getCellValueAsString(row, columnMap.get("UnitPrice")));
-                    raw.setCustomerId(getCellValueAsString(row, columnMap.get("CustomerID")));
-                    raw.setCountry(getCellValueAsString(row, columnMap.get("Country")));
-                    raw.setImportedAt(importTime);
-                    raw.setFileName(fileName);
-                    raw.setRowNumber(i + 1);
+    /**
+     * Read, transform and load the segments of a batch. With the pipeline on,
+     * the cursor is read on the calling thread while the transform and the load
+     * each run on their own thread, connected by queues of
+     * {@code etl.pipeline.queue-capacity} segments; otherwise the segments are
+     * handled one after another.
+     *
+     * @param segmentLoader loads one transformed segment
+     * @param loadRunner    runs all loading, e.g. inside one transaction
+     */
+    private void transformAndLoadStream(String importBatchId, String afterInvoiceNo, int maxInvoices, int maxRows,
+                                        ImportProgress progress, RejectedRowCollector rejected,
+                                        Consumer<TransformedSegment> segmentLoader, Consumer<Runnable> loadRunner) {
+        if (!pipelineEnabled) {
+            loadRunner.accept(() -> forEachInvoiceSegment(importBatchId, afterInvoiceNo, maxInvoices, maxRows,
+                    (rows, dateParser) -> segmentLoader.accept(
+                            transformRows(rows, progress, dateParser, rejected, deduplicate))));
+            return;
+        }
 
-                    rawTransactions.add(raw);
-                } catch (Exception e) {
-                    log.warn("Error parsing Excel row {}: {}", i + 1, e.getMessage());
+        PipelineStage<TransformedSegment> loadStage = new PipelineStage<>("load", pipelineQueueCapacity,
+                segment -> segment.rows().size(), segmentLoader, loadRunner);
+        PipelineStage<RawSegment> transformStage = new PipelineStage<>("transform", pipelineQueueCapacity,
+                segment -> segment.rows().size(),
+                segment -> loadStage.submit(
+                        transformRows(segment.rows(), progress, segment.dateParser(), rejected, deduplicate)),
+                Runnable::run);
+        progress.addStage(transformStage);
+        progress.addStage(loadStage);
+        try {
+            forEachInvoiceSegment(importBatchId, afterInvoiceNo, maxInvoices, maxRows,
+                    (rows, dateParser) -> transformStage.submit(new RawSegment(rows, dateParser)));
+            transformStage.finish();
+            loadStage.finish();
+        } finally {
+            // Stops the stages if reading or a stage failed; a running transaction rolls back
+            transformStage.abort();
+            loadStage.abort();
+        }
+    }
+
+    /**
+     * Stream the raw rows of a batch in (invoiceNo, rowNumber) order through a
+     * server-side cursor and hand them over in segments. A segment only ends on
+     * an invoice boundary, once it holds maxInvoices invoices or maxRows rows,
+     * so every order is transformed whole. The date layout is sniffed from the
+     * first segment.
+     */
+    private void forEachInvoiceSegment(String importBatchId, String afterInvoiceNo, int maxInvoices, int maxRows,
+                                       BiConsumer<List<RawTransaction>, ImportDateParser> segmentHandler) {
+        ImportDateParser dateParser = null;
+        try (Stream<RawTransaction> rows = mongoTemplate.stream(rawRowsQuery(importBatchId, afterInvoiceNo),
+                RawTransaction.class)) {
+            List<RawTransaction> segment = new ArrayList<>();
+            String currentInvoice = null;
+            int invoicesInSegment = 0;
+            Iterator<RawTransaction> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                RawTransaction raw = iterator.next();
+                raw.setImportBatchId(importBatchId); // not projected
+                if (segment.isEmpty() || !Objects.equals(raw.getInvoiceNo(), currentInvoice)) {
+                    if (invoicesInSegment >= maxInvoices || segment.size() >= maxRows) {
+                        if (dateParser == null) {
+                            dateParser = sniffDateLayout(segment);
+                        }
+                        segmentHandler.accept(segment, dateParser);
+                        segment = new ArrayList<>();
+                        invoicesInSegment = 0;
+                    }
+                    currentInvoice = raw.getInvoiceNo();
+                    invoicesInSegment++;
                 }
+                segment.add(raw);
+            }
+            if (!segment.isEmpty()) {
+                segmentHandler.accept(segment, dateParser != null ? dateParser : sniffDateLayout(segment));
             }
         }
-
-        return rawTransactions;
     }
 
     /**
-     * Helper method to get cell value as string
+     * Raw rows of a batch, optionally after an invoice, with only the fields the transform reads
      */
-    private String getCellValueAsString(Row row, Integer columnIndex) {
-        if (columnIndex == null) return "";
-        Cell cell = row.getCell(columnIndex);
-        if (cell == null) return "";
+    private Query rawRowsQuery(String importBatchId, String afterInvoiceNo) {
+        Query query = new Query(rawRowsCriteria(importBatchId, afterInvoiceNo))
+                .with(Sort.by("invoiceNo", "rowNumber"))
+                .cursorBatchSize(cursorBatchSize)
+                .noCursorTimeout();
+        query.fields().include(TRANSFORM_FIELDS).exclude("_id");
+        return query;
+    }
 
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            default -> "";
-        };
+    private long countRawRows(String importBatchId, String afterInvoiceNo) {
+        return mongoTemplate.count(new Query(rawRowsCriteria(importBatchId, afterInvoiceNo)), RawTransaction.class);
+    }
+
+    private Criteria rawRowsCriteria(String importBatchId, String afterInvoiceNo) {
+        Criteria criteria = Criteria.where("importBatchId").is(importBatchId);
+        return afterInvoiceNo != null ? criteria.and("invoiceNo").gt(afterInvoiceNo) : criteria;
     }
 
     /**
-     * Step 2: Transform raw data and Load to PostgreSQL (Clean data)
+     * Chunked mode: rows are read in (invoiceNo, rowNumber) order and committed
+     * every {@code etl.load.commit-invoices} invoices together with the batch
+     * checkpoint. An interrupted batch continues after the last committed invoice.
      */
-    @Transactional
-    public void transformAndLoadToPostgres(DataImportResult result) {
-        log.info("Starting transformation and loading to PostgreSQL...");
-        List<RawTransaction> rawTransactions = rawTransactionRepository.findAll();
-        log.info("Retrieved {} raw transactions from MongoDB", rawTransactions.size());
+    private void transformAndLoadInChunks(String importBatchId, DataImportResult result, ImportProgress progress,
+                                          RejectedRowCollector rejected) {
+        ImportCheckpoint checkpoint = importCheckpointRepository.findById(importBatchId)
+                .orElseGet(() -> {
+                    ImportCheckpoint newCheckpoint = new ImportCheckpoint();
+                    newCheckpoint.setImportBatchId(importBatchId);
+                    newCheckpoint.setFileName(result.getFileName());
+                    return newCheckpoint;
+                });
+        checkpoint.setStatus(CHECKPOINT_RUNNING);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        importCheckpointRepository.save(checkpoint);
+
+        long rowCount = countRawRows(importBatchId, checkpoint.getLastInvoiceNo());
+        log.info("Streaming {} raw transactions from MongoDB (resuming after invoice {}, {} chunks already committed)",
+                rowCount, checkpoint.getLastInvoiceNo(), checkpoint.getChunksCommitted());
+
+        progress.startPhase(ImportProgress.Phase.TRANSFORM, rowCount);
+        try {
+            transformAndLoadStream(importBatchId, checkpoint.getLastInvoiceNo(), commitInvoices, Integer.MAX_VALUE,
+                    progress, rejected, chunk -> loadSegment(chunk, result, checkpoint), Runnable::run);
+        } catch (RuntimeException e) {
+            // The in-memory checkpoint may be ahead of a rolled back chunk; mark the stored one
+            importCheckpointRepository.findById(importBatchId).ifPresent(stored -> {
+                stored.setStatus(CHECKPOINT_FAILED);
+                stored.setUpdatedAt(LocalDateTime.now());
+                importCheckpointRepository.save(stored);
+            });
+            throw e;
+        }
 
-        Map<String, Customer> customerMap = new HashMap<>();
-        Map<String, Product> productMap = new HashMap<>();
-        Map<String, Order> orderMap = new HashMap<>();
-        List<OrderItem> orderItems = new ArrayList<>();
+        checkpoint.setStatus(CHECKPOINT_COMPLETED);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        importCheckpointRepository.save(checkpoint);
+        log.info("Chunked transformation completed in {} chunks. Errors: {}",
+                checkpoint.getChunksCommitted(), result.getErrorCount());
+    }
 
-        int errorCount = 0;
-        int processedCount = 0;
+    /**
+     * Transform replayed rows and load them to PostgreSQL in one transaction.
+     * Replayed lines are added to the totals of orders that already exist.
+     */
+    private void transformAndLoadRows(List<RawTransaction> rawTransactions, DataImportResult result,
+                                      ImportProgress progress, ImportDateParser dateParser,
+                                      ImportCheckpoint checkpoint, RejectedRowCollector rejected) {
+        loadSegment(transformRows(rawTransactions, progress, dateParser, rejected, true), result, checkpoint);
+    }
 
+    /**
+     * Transform a segment of rows into customers, products, orders and order
+     * items, without writing anything to PostgreSQL
+     *
+     * @param addToExistingOrders the rows only hold the new lines of orders that
+     *                            already exist, so their totals are added to
+     */
+    private TransformedSegment transformRows(List<RawTransaction> rawTransactions, ImportProgress progress,
+                                             ImportDateParser dateParser, RejectedRowCollector rejected,
+                                             boolean addToExistingOrders) {
+        // Resolve all dimension keys of the batch up front instead of one SELECT per new key
+        Set<String> customerIds = new HashSet<>();
+        Set<String> stockCodes = new HashSet<>();
+        Set<String> invoiceNos = new HashSet<>();
         for (RawTransaction raw : rawTransactions) {
-            try {
+            String customerId = raw.getCustomerId();
+            if (customerId != null && !customerId.trim().isEmpty() && !customerId.equalsIgnoreCase("null")) {
+                customerIds.add(customerId);
+            }
+            if (raw.getStockCode() != null && !raw.getStockCode().trim().isEmpty()) {
+                stockCodes.add(raw.getStockCode());
+            }
+            if (raw.getInvoiceNo() != null && !raw.getInvoiceNo().trim().isEmpty()) {
+                invoiceNos.add(raw.getInvoiceNo());
+            }
+        }
+        Map<String, Customer> existingCustomers = preloadByIds(customerRepository, customerIds, Customer::getCustomerId);
+        Map<String, Product> existingProducts = preloadByIds(productRepository, stockCodes, Product::getStockCode);
+        Map<String, Order> existingOrders = preloadByIds(orderRepository, invoiceNos, Order::getOrderId);
+        log.info("Preloaded {} existing customers, {} products and {} orders",
+                existingCustomers.size(), existingProducts.size(), existingOrders.size());
+
+        TransformContext context = new TransformContext(
+                existingCustomers, existingProducts, existingOrders, dateParser, progress, rejected);
+        TransformPartition output;
+        if (transformParallelism > 1) {
+            output = transformInParallel(rawTransactions, context);
+        } else {
+            output = new TransformPartition();
+            int processedCount = 0;
+            for (RawTransaction raw : rawTransactions) {
                 processedCount++;
                 if (processedCount % 1000 == 0) {
                     log.info("Processed {} / {} records", processedCount, rawTransactions.size());
                 }
+                transformRow(raw, context, output);
+            }
+        }
+
+        Map<String, Customer> customerMap = context.customerMap;
+        Map<String, Product> productMap = context.productMap;
+        Map<String, OrderTotals> orderTotals = output.orderTotals;
+        List<OrderItem> orderItems = output.orderItems;
+        int errorCount = output.errorCount;
+
+        // Apply the totals accumulated while the items were created
+        List<Order> orders = new ArrayList<>(output.orderMap.values());
+        long totalLines = 0;
+        for (Order order : orders) {
+            OrderTotals totals = orderTotals.get(order.getOrderId());
+            BigDecimal subtotal = BigDecimal.ZERO;
+            if (totals != null) {
+                subtotal = totals.getSubtotal();
+                totalLines += totals.getLineCount();
+            }
+            // Deduplicated imports and replays only carry the new lines of an existing order, so add to its total
+            if (addToExistingOrders && existingOrders.containsKey(order.getOrderId()) && order.getSubtotal() != null) {
+                subtotal = subtotal.add(order.getSubtotal());
+            }
+            order.setSubtotal(subtotal);
+            order.setTotalAmount(subtotal); // Can add tax/shipping later
+        }
+        log.info("Computed totals for {} orders from {} order lines", orders.size(), totalLines);
+
+        // Last point where the segment can be cancelled without touching PostgreSQL
+        progress.checkCancelled();
+        Set<String> newCustomerIds = new HashSet<>(customerMap.keySet());
+        newCustomerIds.removeAll(existingCustomers.keySet());
+        Set<String> newStockCodes = new HashSet<>(productMap.keySet());
+        newStockCodes.removeAll(existingProducts.keySet());
+        return new TransformedSegment(rawTransactions, customerMap, productMap, orders, existingOrders.keySet(),
+                orderItems, errorCount, newCustomerIds, newStockCodes);
+    }
+
+    /**
+     * Load a transformed segment in one transaction (joining the caller's, if any).
+     * With a checkpoint (chunked mode) the checkpoint is advanced in the same
+     * transaction and the persistence context is flushed and cleared afterwards,
+     * so it does not grow from chunk to chunk.
+     */
+    private void loadSegment(TransformedSegment segment, DataImportResult result, ImportCheckpoint checkpoint) {
+        List<RawTransaction> rawTransactions = segment.rows();
+        Map<String, Customer> customerMap = segment.customerMap();
+        Map<String, Product> productMap = segment.productMap();
+        List<Order> orders = segment.orders();
+        List<OrderItem> orderItems = segment.orderItems();
+
+        // Load in one transaction
+        long loadStart = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (pipelineEnabled) {
+                refreshNewDimensions(segment);
+            }
+            loadToPostgres(customerMap, productMap, orders, segment.existingOrderIds(), orderItems, result);
+            if (checkpoint != null) {
+                RawTransaction last = rawTransactions.get(rawTransactions.size() - 1);
+                checkpoint.setLastInvoiceNo(last.getInvoiceNo());
+                checkpoint.setLastRowNumber(last.getRowNumber());
+                checkpoint.setRowsCommitted(checkpoint.getRowsCommitted() + rawTransactions.size());
+                checkpoint.setChunksCommitted(checkpoint.getChunksCommitted() + 1);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                importCheckpointRepository.save(checkpoint);
+                entityManager.flush();
+                entityManager.clear();
+            }
+        });
+        long loadMillis = System.currentTimeMillis() - loadStart;
+        long loadedRows = (long) customerMap.size() + productMap.size() + orders.size() + orderItems.size();
+        log.info("Load phase ({} mode) wrote {} rows in {} ms ({} rows/sec)",
+                loadMode, loadedRows, loadMillis, loadMillis > 0 ? loadedRows * 1000 / loadMillis : loadedRows);
+
+        result.setErrorCount(result.getErrorCount() + segment.errorCount());
+    }
+
+    /**
+     * With the pipeline on, a segment is transformed while the previous ones are
+     * still being loaded, so its preload may have missed customers and products
+     * those segments add. Look the ones it created up again inside the load
+     * transaction and apply its non-empty attributes to the stored rows instead,
+     * as the transform does for preloaded entities.
+     */
+    private void refreshNewDimensions(TransformedSegment segment) {
+        Map<String, Customer> customerMap = segment.customerMap();
+        Map<String, Customer> storedCustomers =
+                preloadByIds(customerRepository, segment.newCustomerIds(), Customer::getCustomerId);
+        for (Customer stored : storedCustomers.values()) {
+            Customer created = customerMap.get(stored.getCustomerId());
+            if (created.getCountry() != null && !created.getCountry().isEmpty()) {
+                stored.setCountry(created.getCountry());
+            }
+            customerMap.put(stored.getCustomerId(), stored);
+        }
+
+        Map<String, Product> productMap = segment.productMap();
+        Map<String, Product> storedProducts =
+                preloadByIds(productRepository, segment.newStockCodes(), Product::getStockCode);
+        for (Product stored : storedProducts.values()) {
+            Product created = productMap.get(stored.getStockCode());
+            if (created.getDescription() != null && !created.getDescription().isEmpty()) {
+                stored.setDescription(created.getDescription());
+            }
+            if (created.getUnitPrice() != null) {
+                stored.setUnitPrice(created.getUnitPrice());
+            }
+            productMap.put(stored.getStockCode(), stored);
+        }
+        if (!storedCustomers.isEmpty() || !storedProducts.isEmpty()) {
+            log.debug("{} customers and {} products were added by a segment loaded in the meantime",
+                    storedCustomers.size(), storedProducts.size());
+        }
+    }
 
-                // Transform and create/update Customer
-                String customerId = raw.getCustomerId();
-                if (customerId != null && !customerId.trim().isEmpty() && !customerId.equalsIgnoreCase("null")) {
-                    Customer customer = customerMap.computeIfAbsent(customerId, id -> {
-                        return customerRepository.findByCustomerId(id)
+    /**
+     * Output of the transform for one segment, ready to be loaded
+     */
+    private record TransformedSegment(List<RawTransaction> rows, Map<String, Customer> customerMap,
+                                      Map<String, Product> productMap, List<Order> orders,
+                                      Set<String> existingOrderIds, List<OrderItem> orderItems, int errorCount,
+                                      Set<String> newCustomerIds, Set<String> newStockCodes) {
+    }
+
+    /**
+     * A segment of raw rows as read from the cursor
+     */
+    private record RawSegment(List<RawTransaction> rows, ImportDateParser dateParser) {
+    }
+
+    /**
+     * Transform one raw row: create/update its customer and product and add its
+     * order line to the partition output. Errors are counted, not thrown.
+     */
+    private void transformRow(RawTransaction raw, TransformContext context, TransformPartition output) {
+        context.progress.checkCancelled();
+        context.progress.rowProcessed();
+        try {
+            // Transform and create/update Customer
+            String customerId = raw.getCustomerId();
+            if (customerId != null && !customerId.trim().isEmpty() && !customerId.equalsIgnoreCase("null")) {
+                // compute() keeps the create/update atomic when partitions run in parallel
+                context.customerMap.compute(customerId, (id, customer) -> {
+                    if (customer == null) {
+                        customer = Optional.ofNullable(context.existingCustomers.get(id))
                                 .orElseGet(() -> {
                                     Customer newCustomer = new Customer();
                                     newCustomer.setCustomerId(id);
                                     newCustomer.setCountry(raw.getCountry());
                                     return newCustomer;
                                 });
-                    });
+                    }
 
                     // Update country if needed
                     if (raw.getCountry() != null && !raw.getCountry().isEmpty()) {
                         customer.setCountry(raw.getCountry());
                     }
-                    customerMap.put(customerId, customer);
-                }
+                    return customer;
+                });
+            }
 
-                // Transform and create/update Product
-                String stockCode = raw.getStockCode();
-                if (stockCode != null && !stockCode.trim().isEmpty()) {
-                    Product product = productMap.computeIfAbsent(stockCode, code -> {
-                        return productRepository.findByStockCode(code)
+            // Transform and create/update Product
+            String stockCode = raw.getStockCode();
+            // Parsed once per row, so an unparseable price is counted once
+            BigDecimal unitPrice = stockCode != null && !stockCode.trim().isEmpty()
+                    ? unitPriceOf(raw, context.rejected) : null;
+            if (stockCode != null && !stockCode.trim().isEmpty()) {
+                context.productMap.compute(stockCode, (code, product) -> {
+                    if (product == null) {
+                        product = Optional.ofNullable(context.existingProducts.get(code))
                                 .orElseGet(() -> {
                                     Product newProduct = new Product();
                                     newProduct.setStockCode(code);
                                     newProduct.setDescription(raw.getDescription());
-                                    newProduct.setUnitPrice(parseBigDecimal(raw.getUnitPrice()));
+                                    newProduct.setUnitPrice(unitPrice);
                                     return newProduct;
                                 });
-                    });
+                    }
 
                     // Update product info if needed
                     if (raw.getDescription() != null && !raw.getDescription().isEmpty()) {
                         product.setDescription(raw.getDescription());
                     }
                     if (raw.getUnitPrice() != null) {
-                        product.setUnitPrice(parseBigDecimal(raw.getUnitPrice()));
+                        product.setUnitPrice(unitPrice);
                     }
-                    productMap.put(stockCode, product);
+                    return product;
+                });
+            }
+
+            // Transform and create Order
+            String invoiceNo = raw.getInvoiceNo();
+            if (invoiceNo != null && !invoiceNo.trim().isEmpty()) {
+                // Only create order if customer exists
+                String custId = raw.getCustomerId();
+                if (custId == null || custId.trim().isEmpty() || custId.equalsIgnoreCase("null") || !context.customerMap.containsKey(custId)) {
+                    context.rejected.reject(raw, RejectedTransaction.NO_VALID_CUSTOMER,
+                            "No valid customer (CustomerID: " + custId + ")");
+                    return; // Skip this transaction if no valid customer
                 }
 
-                // Transform and create Order
-                String invoiceNo = raw.getInvoiceNo();
-                if (invoiceNo != null && !invoiceNo.trim().isEmpty()) {
-                    // Only create order if customer exists
-                    String custId = raw.getCustomerId();
-                    if (custId == null || custId.trim().isEmpty() || custId.equalsIgnoreCase("null") || !customerMap.containsKey(custId)) {
-                        log.warn("Skipping order {} - no valid customer (CustomerID: {})", invoiceNo, custId);
-                        continue; // Skip this transaction if no valid customer
-                    }
+                Order order = output.orderMap.computeIfAbsent(invoiceNo, invoice -> {
+                    return Optional.ofNullable(context.existingOrders.get(invoice))
+                            .orElseGet(() -> {
+                                Order newOrder = new Order();
+                                newOrder.setOrderId(invoice);
+                                newOrder.setOrderDate(invoiceDateOf(raw, context.dateParser, context.rejected));
+                                newOrder.setStatus("Completed");
 
-                    Order order = orderMap.computeIfAbsent(invoiceNo, invoice -> {
-                        return orderRepository.findByOrderId(invoice)
-                                .orElseGet(() -> {
-                                    Order newOrder = new Order();
-                                    newOrder.setOrderId(invoice);
-                                    newOrder.setOrderDate(parseDateTime(raw.getInvoiceDate()));
-                                    newOrder.setStatus("Completed");
+                                // Set customer for order (guaranteed to exist now)
+                                Customer customer = context.customerMap.get(custId);
+                                newOrder.setCustomer(customer);
 
-                                    // Set customer for order (guaranteed to exist now)
-                                    Customer customer = customerMap.get(custId);
-                                    newOrder.setCustomer(customer);
+                                return newOrder;
+                            });
+                });
 
-                                    return newOrder;
-                                });
-                    });
-                    orderMap.put(invoiceNo, order);
-
-                    // Create OrderItem
-                    if (stockCode != null && !stockCode.trim().isEmpty()) {
-                        OrderItem orderItem = new OrderItem();
-                        orderItem.setOrder(order);
-                        orderItem.setProduct(productMap.get(stockCode));
-                        orderItem.setQuantity(parseInteger(raw.getQuantity()));
-                        orderItem.setUnitPrice(parseBigDecimal(raw.getUnitPrice()));
-
-                        orderItems.add(orderItem);
-                    }
+                // Create OrderItem
+                if (stockCode != null && !stockCode.trim().isEmpty()) {
+                    OrderItem orderItem = new OrderItem();
+                    orderItem.setOrder(order);
+                    orderItem.setProduct(context.productMap.get(stockCode));
+                    orderItem.setQuantity(quantityOf(raw, context.rejected));
+                    orderItem.setUnitPrice(unitPrice);
+
+                    output.orderItems.add(orderItem);
+                    output.orderTotals.computeIfAbsent(invoiceNo, k -> new OrderTotals()).add(orderItem);
                 }
+            }
 
-            } catch (Exception e) {
-                log.error("Error transforming raw transaction at row {}: {}", raw.getRowNumber(), e.getMessage());
-                errorCount++;
+        } catch (Exception e) {
+            log.debug("Error transforming raw transaction at row {}: {}", raw.getRowNumber(), e.getMessage());
+            context.rejected.reject(raw, RejectedTransaction.TRANSFORM_ERROR, String.valueOf(e.getMessage()));
+            output.errorCount++;
+        }
+    }
+
+    /**
+     * Transform rows on the shared ForkJoinPool. Rows are partitioned by invoice number so
+     * every order is built by exactly one task; customers and products are shared
+     * through the concurrent maps of the context. When a customer or product
+     * appears in several partitions with different attributes, the value applied
+     * last wins, which is not necessarily the one from the last file row.
+     */
+    private TransformPartition transformInParallel(List<RawTransaction> rawTransactions, TransformContext context) {
+        List<List<RawTransaction>> partitions = new ArrayList<>(transformParallelism);
+        for (int i = 0; i < transformParallelism; i++) {
+            partitions.add(new ArrayList<>(rawTransactions.size() / transformParallelism + 1));
+        }
+        for (RawTransaction raw : rawTransactions) {
+            String invoiceNo = raw.getInvoiceNo();
+            int partition = invoiceNo == null ? 0 : Math.floorMod(invoiceNo.hashCode(), transformParallelism);
+            partitions.get(partition).add(raw);
+        }
+        log.debug("Transforming {} records in {} partitions", rawTransactions.size(), transformParallelism);
+
+        List<ForkJoinTask<TransformPartition>> tasks = new ArrayList<>();
+        for (List<RawTransaction> partition : partitions) {
+            tasks.add(transformPool.submit(() -> {
+                TransformPartition partitionOutput = new TransformPartition();
+                for (RawTransaction raw : partition) {
+                    transformRow(raw, context, partitionOutput);
+                }
+                return partitionOutput;
+            }));
+        }
+
+        TransformPartition merged = new TransformPartition();
+        for (ForkJoinTask<TransformPartition> task : tasks) {
+            merged.merge(task.join());
+        }
+        return merged;
+    }
+
+    /**
+     * Dimension state shared by all partitions of one transform
+     */
+    private static class TransformContext {
+        private final Map<String, Customer> existingCustomers;
+        private final Map<String, Product> existingProducts;
+        private final Map<String, Order> existingOrders;
+        private final Map<String, Customer> customerMap = new ConcurrentHashMap<>();
+        private final Map<String, Product> productMap = new ConcurrentHashMap<>();
+        private final ImportDateParser dateParser;
+        private final ImportProgress progress;
+        private final RejectedRowCollector rejected;
+
+        TransformContext(Map<String, Customer> existingCustomers, Map<String, Product> existingProducts,
+                         Map<String, Order> existingOrders, ImportDateParser dateParser, ImportProgress progress,
+                         RejectedRowCollector rejected) {
+            this.existingCustomers = existingCustomers;
+            this.existingProducts = existingProducts;
+            this.existingOrders = existingOrders;
+            this.dateParser = dateParser;
+            this.progress = progress;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * Orders, order lines and error count produced from one partition of rows
+     */
+    private static class TransformPartition {
+        private final Map<String, Order> orderMap = new HashMap<>();
+        private final Map<String, OrderTotals> orderTotals = new HashMap<>();
+        private final List<OrderItem> orderItems = new ArrayList<>();
+        private int errorCount = 0;
+
+        // Partitions never share an invoice, so the maps can be merged without conflicts
+        void merge(TransformPartition other) {
+            orderMap.putAll(other.orderMap);
+            orderTotals.putAll(other.orderTotals);
+            orderItems.addAll(other.orderItems);
+            errorCount += other.errorCount;
+        }
+    }
+
+    /**
+     * Save transformed entities to PostgreSQL. Must run inside a transaction.
+     * Customers and products are upserted in bulk unless etl.load.upsert-dimensions
+     * is off. In "copy" mode new orders and all order items are streamed with COPY;
+     * otherwise they go through JPA saveAll.
+     */
+    private void loadToPostgres(Map<String, Customer> customerMap, Map<String, Product> productMap,
+                                List<Order> orders, Set<String> existingOrderIds,
+                                List<OrderItem> orderItems, DataImportResult result) {
+        if (upsertDimensions) {
+            upsertDimensions(customerMap, productMap, orders, orderItems, result);
+        } else {
+            saveDimensions(customerMap, productMap, orders, orderItems, result);
+        }
+
+        log.info("Saving {} orders to PostgreSQL...", orders.size());
+        if (LOAD_MODE_COPY.equalsIgnoreCase(loadMode)) {
+            // COPY needs the parent rows in the database, not only in the persistence context
+            customerRepository.flush();
+
+            List<Order> newOrders = new ArrayList<>();
+            List<Order> changedOrders = new ArrayList<>();
+            for (Order order : orders) {
+                (existingOrderIds.contains(order.getOrderId()) ? changedOrders : newOrders).add(order);
             }
+            orderRepository.saveAllAndFlush(changedOrders);
+            long copiedOrders = postgresCopyLoader.copyOrders(newOrders);
+            result.setOrdersProcessed(result.getOrdersProcessed() + changedOrders.size() + (int) copiedOrders);
+            log.info("Saved {} orders ({} copied, {} updated)", changedOrders.size() + copiedOrders, copiedOrders, changedOrders.size());
+
+            log.info("Copying {} order items to PostgreSQL...", orderItems.size());
+            long copiedItems = postgresCopyLoader.copyOrderItems(orderItems);
+            result.setOrderItemsProcessed(result.getOrderItemsProcessed() + (int) copiedItems);
+            log.info("Copied {} order items", copiedItems);
+        } else {
+            Map<String, Order> savedOrders = new HashMap<>();
+            for (Order order : orderRepository.saveAll(orders)) {
+                savedOrders.put(order.getOrderId(), order);
+            }
+            result.setOrdersProcessed(result.getOrdersProcessed() + savedOrders.size());
+            log.info("Saved {} orders", savedOrders.size());
+
+            for (OrderItem item : orderItems) {
+                Order saved = savedOrders.get(item.getOrder().getOrderId());
+                if (saved != null) {
+                    item.setOrder(saved);
+                }
+            }
+            log.info("Saving {} order items to PostgreSQL...", orderItems.size());
+            List<OrderItem> savedItems = orderItemRepository.saveAll(orderItems);
+            result.setOrderItemsProcessed(result.getOrderItemsProcessed() + savedItems.size());
+            log.info("Saved {} order items", savedItems.size());
         }
+    }
 
-        // Save all entities to PostgreSQL in batches
+    /**
+     * Save customers and products with JPA saveAll and point orders and items
+     * at the managed instances it returns
+     */
+    private void saveDimensions(Map<String, Customer> customerMap, Map<String, Product> productMap,
+                                List<Order> orders, List<OrderItem> orderItems, DataImportResult result) {
         log.info("Saving {} customers to PostgreSQL...", customerMap.size());
-        List<Customer> customers = new ArrayList<>(customerMap.values());
-        customers = customerRepository.saveAll(customers);
-        result.setCustomersProcessed(customers.size());
-        log.info("Saved {} customers", customers.size());
+        Map<String, Customer> savedCustomers = new HashMap<>();
+        for (Customer customer : customerRepository.saveAll(customerMap.values())) {
+            savedCustomers.put(customer.getCustomerId(), customer);
+        }
+        result.setCustomersProcessed(result.getCustomersProcessed() + savedCustomers.size());
+        log.info("Saved {} customers", savedCustomers.size());
 
         log.info("Saving {} products to PostgreSQL...", productMap.size());
-        List<Product> products = new ArrayList<>(productMap.values());
-        products = productRepository.saveAll(products);
-        result.setProductsProcessed(products.size());
-        log.info("Saved {} products", products.size());
+        Map<String, Product> savedProducts = new HashMap<>();
+        for (Product product : productRepository.saveAll(productMap.values())) {
+            savedProducts.put(product.getStockCode(), product);
+        }
+        result.setProductsProcessed(result.getProductsProcessed() + savedProducts.size());
+        log.info("Saved {} products", savedProducts.size());
 
-        log.info("Saving {} orders to PostgreSQL...", orderMap.size());
-        List<Order> orders = new ArrayList<>(orderMap.values());
+        pointAtDimensions(orders, orderItems, savedCustomers, savedProducts);
+    }
+
+    /**
+     * Write customers and products with bulk INSERT ... ON CONFLICT statements,
+     * then point orders and items at proxies of the written rows, so the order
+     * load does not select them again
+     */
+    private void upsertDimensions(Map<String, Customer> customerMap, Map<String, Product> productMap,
+                                  List<Order> orders, List<OrderItem> orderItems, DataImportResult result) {
+        log.info("Upserting {} customers and {} products to PostgreSQL...", customerMap.size(), productMap.size());
+        int customers = postgresUpsertLoader.upsertCustomers(customerMap.values());
+        int products = postgresUpsertLoader.upsertProducts(productMap.values());
+        result.setCustomersProcessed(result.getCustomersProcessed() + customers);
+        result.setProductsProcessed(result.getProductsProcessed() + products);
+        log.info("Upserted {} customers and {} products", customers, products);
+
+        Map<String, Customer> customerRefs = new HashMap<>(customerMap.size() * 2);
+        for (String customerId : customerMap.keySet()) {
+            customerRefs.put(customerId, entityManager.getReference(Customer.class, customerId));
+        }
+        Map<String, Product> productRefs = new HashMap<>(productMap.size() * 2);
+        for (String stockCode : productMap.keySet()) {
+            productRefs.put(stockCode, entityManager.getReference(Product.class, stockCode));
+        }
+        pointAtDimensions(orders, orderItems, customerRefs, productRefs);
+    }
 
-        // Calculate totals for each order before saving
+    private void pointAtDimensions(List<Order> orders, List<OrderItem> orderItems,
+                                   Map<String, Customer> savedCustomers, Map<String, Product> savedProducts) {
         for (Order order : orders) {
-            BigDecimal subtotal = BigDecimal.ZERO;
-            for (OrderItem item : orderItems) {
-                if (item.getOrder().getOrderId().equals(order.getOrderId())) {
-                    BigDecimal itemTotal = item.getUnitPrice().multiply(new BigDecimal(item.getQuantity()));
-                    subtotal = subtotal.add(itemTotal);
-                }
+            Customer saved = savedCustomers.get(order.getCustomer().getCustomerId());
+            if (saved != null) {
+                order.setCustomer(saved);
+            }
+        }
+        for (OrderItem item : orderItems) {
+            Product saved = savedProducts.get(item.getProduct().getStockCode());
+            if (saved != null) {
+                item.setProduct(saved);
+            }
+        }
+    }
+
+    /**
+     * Load existing entities for the given ids with chunked IN (...) queries
+     */
+    private <T> Map<String, T> preloadByIds(JpaRepository<T, String> repository, Set<String> ids,
+                                            Function<T, String> idGetter) {
+        Map<String, T> entities = new HashMap<>(ids.size() * 2);
+        List<String> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += preloadChunkSize) {
+            List<String> slice = idList.subList(from, Math.min(from + preloadChunkSize, idList.size()));
+            for (T entity : repository.findAllById(slice)) {
+                entities.put(idGetter.apply(entity), entity);
             }
-            order.setSubtotal(subtotal);
-            order.setTotalAmount(subtotal); // Can add tax/shipping later
         }
+        return entities;
+    }
+
+    /**
+     * Running subtotal and line count of one order, updated as each item is created
+     */
+    static class OrderTotals {
+        private BigDecimal subtotal = BigDecimal.ZERO;
+        private int lineCount = 0;
 
-        orders = orderRepository.saveAll(orders);
-        result.setOrdersProcessed(orders.size());
-        log.info("Saved {} orders", orders.size());
+        void add(OrderItem item) {
+            subtotal = subtotal.add(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            lineCount++;
+        }
 
-        log.info("Saving {} order items to PostgreSQL...", orderItems.size());
-        orderItems = orderItemRepository.saveAll(orderItems);
-        result.setOrderItemsProcessed(orderItems.size());
-        log.info("Saved {} order items", orderItems.size());
+        BigDecimal getSubtotal() {
+            return subtotal;
+        }
 
-        result.setErrorCount(errorCount);
-        log.info("Transformation completed. Errors: {}", errorCount);
+        int getLineCount() {
+            return lineCount;
+        }
     }
 
     /**
-     * Helper method to parse BigDecimal
+     * Typed values staged during extract are used as is; text is only parsed
+     * for untyped rows and for values that failed to parse during extract.
+     * Values that fall back to a default are counted on the collector, not logged.
      */
-    private BigDecimal parseBigDecimal(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return BigDecimal.ZERO;
-        }
-        try {
-            return new BigDecimal(value.trim());
-        } catch (NumberFormatException e) {
-            log.warn("Error parsing BigDecimal: {}", value);
+    private BigDecimal unitPriceOf(RawTransaction raw, RejectedRowCollector rejected) {
+        return raw.hasTypedValue(RawTransaction.UNIT_PRICE_VALID)
+                ? BigDecimal.valueOf(raw.getUnitPriceCents(), 2)
+                : parseBigDecimal(raw.getUnitPrice(), rejected);
+    }
+
+    private Integer quantityOf(RawTransaction raw, RejectedRowCollector rejected) {
+        return raw.hasTypedValue(RawTransaction.QUANTITY_VALID)
+                ? raw.getQuantityValue()
+                : parseInteger(raw.getQuantity(), rejected);
+    }
+
+    private LocalDateTime invoiceDateOf(RawTransaction raw, ImportDateParser dateParser,
+                                        RejectedRowCollector rejected) {
+        return raw.hasTypedValue(RawTransaction.INVOICE_DATE_VALID)
+                ? raw.getInvoiceDateValue()
+                : parseDateTime(raw.getInvoiceDate(), dateParser, rejected);
+    }
+
+    /**
+     * Helper method to parse a price, rounded to cents like the unit_price columns
+     */
+    private BigDecimal parseBigDecimal(String value, RejectedRowCollector rejected) {
+        long cents = NumericFieldScanner.parsePriceCents(value);
+        if (cents == NumericFieldScanner.INVALID) {
+            if (value != null && !value.isBlank()) {
+                rejected.defaulted(DEFAULTED_UNIT_PRICE);
+            }
             return BigDecimal.ZERO;
         }
+        return BigDecimal.valueOf(cents, 2);
     }
 
     /**
-     * Helper method to parse Integer
+     * Helper method to parse Integer; decimal values are truncated
      */
-    private Integer parseInteger(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return 0;
-        }
-        try {
-            return Integer.parseInt(value.trim().split("\\.")[0]); // Handle decimal values
-        } catch (NumberFormatException e) {
-            log.warn("Error parsing Integer: {}", value);
+    private Integer parseInteger(String value, RejectedRowCollector rejected) {
+        long quantity = NumericFieldScanner.parseQuantity(value);
+        if (quantity == NumericFieldScanner.INVALID) {
+            if (value != null && !value.isBlank()) {
+                rejected.defaulted(DEFAULTED_QUANTITY);
+            }
             return 0;
         }
+        return (int) quantity;
     }
 
     /**
-     * Helper method to parse DateTime
+     * Helper method to parse DateTime; unparseable dates fall back to the current time
      */
-    private LocalDateTime parseDateTime(String value) {
+    private LocalDateTime parseDateTime(String value, ImportDateParser dateParser, RejectedRowCollector rejected) {
         if (value == null || value.trim().isEmpty()) {
             return LocalDateTime.now();
         }
 
-        // Try common date formats
-        String[] formats = {
-            "dd/MM/yyyy H:mm",        // 18/08/2011 6:30 - European format (most common in your data)
-            "dd/MM/yyyy HH:mm",       // 18/08/2011 08:30
-            "M/d/yyyy H:mm",          // 8/18/2011 6:30 - US format
-            "M/d/yyyy HH:mm",         // 8/18/2011 08:30
-            "yyyy-MM-dd HH:mm:ss",    // 2011-08-18 08:30:00
-            "yyyy-MM-dd'T'HH:mm:ss",  // 2011-08-18T08:30:00
-            "MM/dd/yyyy HH:mm"        // 08/18/2011 08:30
-        };
+        LocalDateTime parsed = dateParser.parse(value);
+        if (parsed == null) {
+            rejected.defaulted(DEFAULTED_INVOICE_DATE);
+            return LocalDateTime.now();
+        }
+        return parsed;
+    }
 
-        for (String format : formats) {
-            try {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-                return LocalDateTime.parse(value.trim(), formatter);
-            } catch (DateTimeParseException e) {
-                // Try next format
-            }
+    /**
+     * Fix the file's date layout from its first rows before the (possibly parallel) transform starts
+     */
+    private ImportDateParser sniffDateLayout(List<RawTransaction> rawTransactions) {
+        ImportDateParser dateParser = new ImportDateParser();
+        dateParser.sniff(rawTransactions.stream()
+                .limit(ImportDateParser.SAMPLE_SIZE)
+                .map(RawTransaction::getInvoiceDate)
+                .toList());
+        return dateParser;
+    }
+
+    /**
+     * Thrown when analyze-and-import finds too few valid rows; carries the report so far
+     */
+    private static class QualityThresholdException extends IllegalStateException {
+        private final DataQualityReport report;
+
+        QualityThresholdException(String message, DataQualityReport report) {
+            super(message);
+            this.report = report;
         }
 
-        log.warn("Error parsing DateTime: {}, using current time", value);
-        return LocalDateTime.now();
+        DataQualityReport getReport() {
+            return report;
+        }
     }
 }
-
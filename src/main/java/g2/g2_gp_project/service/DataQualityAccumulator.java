@@ -0,0 +1,199 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.DataQualityReport;
+import g2.g2_gp_project.util.ImportDateParser;
+import g2.g2_gp_project.util.NumericFieldScanner;
+import g2.g2_gp_project.util.TransactionColumnMapper;
+import g2.g2_gp_project.util.TransactionColumnMapper.Column;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link DataQualityReport} one row at a time, so the same checks can
+ * run in the standalone analysis and while rows are being staged by an import.
+ * Not thread-safe; use one instance per file.
+ */
+public class DataQualityAccumulator {
+
+    private static final int MAX_ISSUES = 100;
+
+    private final String fileName;
+    private final Map<String, DataQualityReport.ColumnQuality> columnStats = new HashMap<>();
+    private final List<DataQualityReport.DataIssue> issues = new ArrayList<>();
+    private final ImportDateParser dateParser = new ImportDateParser();
+    private TransactionColumnMapper columns;
+
+    private long totalRows = 0;
+    private long validRows = 0;
+    private long missingCustomerIds = 0;
+    private long invalidDates = 0;
+    private long invalidPrices = 0;
+    private long invalidQuantities = 0;
+    private long emptyDescriptions = 0;
+
+    public DataQualityAccumulator(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Register the header of the file (or of the next zip entry); rows that
+     * follow are counted against these columns
+     */
+    public void startColumns(List<String> headerNames, TransactionColumnMapper columns) {
+        for (String header : headerNames) {
+            columnStats.computeIfAbsent(header, name -> DataQualityReport.ColumnQuality.builder()
+                    .columnName(name)
+                    .totalValues(0)
+                    .nullValues(0)
+                    .emptyValues(0)
+                    .invalidValues(0)
+                    .build());
+        }
+        this.columns = columns;
+    }
+
+    public void accept(long rowNumber, String invoiceNo, String stockCode, String description, String quantity,
+                       String invoiceDate, String unitPrice, String customerId, String country) {
+        totalRows++;
+        boolean rowValid = true;
+
+        // Check InvoiceNo
+        updateColumnStats(Column.INVOICE_NO, invoiceNo);
+        if (isNullOrEmpty(invoiceNo)) {
+            addIssue(rowNumber, "InvoiceNo", "MISSING", invoiceNo, "Missing invoice number");
+            rowValid = false;
+        }
+
+        // Check StockCode
+        updateColumnStats(Column.STOCK_CODE, stockCode);
+        if (isNullOrEmpty(stockCode)) {
+            addIssue(rowNumber, "StockCode", "MISSING", stockCode, "Missing stock code");
+            rowValid = false;
+        }
+
+        // Check Description
+        updateColumnStats(Column.DESCRIPTION, description);
+        if (isNullOrEmpty(description)) {
+            emptyDescriptions++;
+        }
+
+        // Check Quantity
+        updateColumnStats(Column.QUANTITY, quantity);
+        if (isNullOrEmpty(quantity) || !NumericFieldScanner.isValidQuantity(quantity)) {
+            invalidQuantities++;
+            markInvalid(Column.QUANTITY);
+            addIssue(rowNumber, "Quantity", "INVALID_NUMBER", quantity, "Invalid quantity format");
+            rowValid = false;
+        }
+
+        // Check InvoiceDate
+        updateColumnStats(Column.INVOICE_DATE, invoiceDate);
+        if (isNullOrEmpty(invoiceDate) || !dateParser.isValid(invoiceDate)) {
+            invalidDates++;
+            markInvalid(Column.INVOICE_DATE);
+            addIssue(rowNumber, "InvoiceDate", "INVALID_DATE", invoiceDate, "Invalid date format");
+            rowValid = false;
+        }
+
+        // Check UnitPrice
+        updateColumnStats(Column.UNIT_PRICE, unitPrice);
+        if (isNullOrEmpty(unitPrice) || !NumericFieldScanner.isValidPrice(unitPrice)) {
+            invalidPrices++;
+            markInvalid(Column.UNIT_PRICE);
+            addIssue(rowNumber, "UnitPrice", "INVALID_PRICE", unitPrice, "Invalid price format");
+            rowValid = false;
+        }
+
+        // Check CustomerID
+        updateColumnStats(Column.CUSTOMER_ID, customerId);
+        if (isNullOrEmpty(customerId)) {
+            missingCustomerIds++;
+            addIssue(rowNumber, "CustomerID", "MISSING", customerId, "Missing customer ID - order will be skipped");
+            rowValid = false;
+        }
+
+        // Check Country
+        updateColumnStats(Column.COUNTRY, country);
+
+        if (rowValid) {
+            validRows++;
+        }
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Share of fully valid rows so far, 0-100 (100 before any row)
+     */
+    public double getValidPercent() {
+        return totalRows > 0 ? validRows * 100.0 / totalRows : 100.0;
+    }
+
+    public DataQualityReport buildReport() {
+        // Calculate quality scores
+        for (DataQualityReport.ColumnQuality col : columnStats.values()) {
+            if (col.getTotalValues() > 0) {
+                double validValues = col.getTotalValues() - col.getNullValues() - col.getEmptyValues() - col.getInvalidValues();
+                col.setQualityScore((validValues / col.getTotalValues()) * 100);
+            }
+        }
+
+        return DataQualityReport.builder()
+                .fileName(fileName)
+                .totalRows(totalRows)
+                .validRows(validRows)
+                .invalidRows(totalRows - validRows)
+                .columnQuality(new HashMap<>(columnStats))
+                .issues(new ArrayList<>(issues))
+                .missingCustomerIds(missingCustomerIds)
+                .invalidDates(invalidDates)
+                .invalidPrices(invalidPrices)
+                .invalidQuantities(invalidQuantities)
+                .emptyDescriptions(emptyDescriptions)
+                .build();
+    }
+
+    private void updateColumnStats(Column column, String value) {
+        DataQualityReport.ColumnQuality col = statsOf(column);
+        if (col == null) return;
+
+        col.setTotalValues(col.getTotalValues() + 1);
+        if (value == null) {
+            col.setNullValues(col.getNullValues() + 1);
+        } else if (value.trim().isEmpty()) {
+            col.setEmptyValues(col.getEmptyValues() + 1);
+        }
+    }
+
+    private void markInvalid(Column column) {
+        DataQualityReport.ColumnQuality col = statsOf(column);
+        if (col != null) {
+            col.setInvalidValues(col.getInvalidValues() + 1);
+        }
+    }
+
+    private DataQualityReport.ColumnQuality statsOf(Column column) {
+        String header = columns != null ? columns.getHeader(column) : null;
+        return header != null ? columnStats.get(header) : null;
+    }
+
+    private void addIssue(long rowNumber, String columnName, String issueType, String value, String description) {
+        if (issues.size() >= MAX_ISSUES) return; // Limit issues to first 100
+        issues.add(DataQualityReport.DataIssue.builder()
+                .rowNumber(rowNumber)
+                .columnName(columnName)
+                .issueType(issueType)
+                .value(value == null ? "null" : value)
+                .description(description)
+                .build());
+    }
+
+    private boolean isNullOrEmpty(String value) {
+        return value == null || value.trim().isEmpty() || value.equalsIgnoreCase("null");
+    }
+}
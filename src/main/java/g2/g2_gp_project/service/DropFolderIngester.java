@@ -0,0 +1,231 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.ImportJobStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory and imports CSV/XLSX files dropped into it.
+ *
+ * A WatchService reports new and changed files; a file is only queued once its
+ * size and modification time have not changed for {@code etl.watch.stable-seconds},
+ * so files still being copied are left alone. Imports run as regular jobs on
+ * {@link ImportJobService}, at most {@code etl.watch.max-concurrent} at a time;
+ * files waiting for a slot simply stay in the directory. Finished files are
+ * moved to the done/ or failed/ subfolder; cancelled ones (e.g. by a shutdown)
+ * stay where they are and are picked up again on the next start.
+ */
+@Service
+@Slf4j
+public class DropFolderIngester {
+
+    private static final String DONE_DIR = "done";
+    private static final String FAILED_DIR = "failed";
+    private static final DateTimeFormatter MOVE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ImportJobService importJobService;
+    private final Map<Path, FileState> candidates = new ConcurrentHashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${etl.watch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${etl.watch.dir:}")
+    private String watchDir;
+
+    @Value("${etl.watch.stable-seconds:10}")
+    private long stableSeconds;
+
+    @Value("${etl.watch.max-concurrent:1}")
+    private int maxConcurrent;
+
+    private Path dir;
+    private Semaphore slots;
+    private WatchService watchService;
+    private ScheduledExecutorService scheduler;
+    private Thread watchThread;
+
+    public DropFolderIngester(ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (watchDir == null || watchDir.isBlank()) {
+            throw new IllegalStateException("etl.watch.enabled is set but etl.watch.dir is empty");
+        }
+
+        dir = Path.of(watchDir).toAbsolutePath().normalize();
+        Files.createDirectories(dir.resolve(DONE_DIR));
+        Files.createDirectories(dir.resolve(FAILED_DIR));
+        slots = new Semaphore(Math.max(1, maxConcurrent));
+
+        watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        // Files dropped while the application was down
+        rescan();
+
+        watchThread = new Thread(this::watchLoop, "drop-folder-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "drop-folder-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::dispatchStableFiles, 1, 1, TimeUnit.SECONDS);
+
+        log.info("Watching {} for import files (stable after {}s, {} concurrent)", dir, stableSeconds, maxConcurrent);
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        track(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    log.error("Drop folder {} is no longer accessible, stopping the watcher", dir);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void rescan() {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(this::track);
+        } catch (IOException e) {
+            log.warn("Could not scan drop folder {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void track(Path file) {
+        if (Files.isRegularFile(file) && ImportJobService.isSupportedFile(file.getFileName().toString())
+                && !inFlight.contains(file)) {
+            candidates.putIfAbsent(file, new FileState(-1, null, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Queue candidates whose size and modification time have been stable long enough
+     */
+    private void dispatchStableFiles() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, FileState> entry : candidates.entrySet()) {
+            Path file = entry.getKey();
+            try {
+                if (!Files.exists(file)) {
+                    candidates.remove(file);
+                    continue;
+                }
+                long size = Files.size(file);
+                FileTime modified = Files.getLastModifiedTime(file);
+                FileState state = entry.getValue();
+                if (size != state.size() || !modified.equals(state.modified())) {
+                    // Still growing (or first look): restart the stability window
+                    candidates.put(file, new FileState(size, modified, now));
+                } else if (now - state.since() >= stableSeconds * 1000 && slots.tryAcquire()) {
+                    submit(file);
+                }
+            } catch (IOException e) {
+                log.warn("Could not check dropped file {}: {}", file, e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Error dispatching dropped file {}", file, e);
+            }
+        }
+    }
+
+    private void submit(Path file) {
+        candidates.remove(file);
+        inFlight.add(file);
+        try {
+            ImportJobStatus job = importJobService.submit(file, file.getFileName().toString(), false,
+                    status -> finish(file, status));
+            log.info("Queued dropped file {} as import job {}", file.getFileName(), job.getJobId());
+        } catch (IllegalStateException e) {
+            // Job queue full; keep the file and try again on a later tick
+            inFlight.remove(file);
+            slots.release();
+            track(file);
+        }
+    }
+
+    private void finish(Path file, ImportJobStatus status) {
+        try {
+            if ("CANCELLED".equals(status.getState())) {
+                log.info("Import job {} for {} was cancelled; leaving the file in place",
+                        status.getJobId(), file.getFileName());
+                return;
+            }
+            String target = "COMPLETED".equals(status.getState()) ? DONE_DIR : FAILED_DIR;
+            Path moved = moveTo(file, dir.resolve(target));
+            log.info("Import job {} for {} finished as {}: moved to {}",
+                    status.getJobId(), file.getFileName(), status.getState(), moved);
+        } catch (IOException e) {
+            log.error("Could not move imported file {}: {}", file, e.getMessage());
+        } finally {
+            inFlight.remove(file);
+            slots.release();
+        }
+    }
+
+    private Path moveTo(Path file, Path targetDir) throws IOException {
+        Path target = targetDir.resolve(file.getFileName());
+        if (Files.exists(target)) {
+            // Keep earlier files with the same name
+            target = targetDir.resolve(LocalDateTime.now().format(MOVE_SUFFIX) + "-" + file.getFileName());
+        }
+        return Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private record FileState(long size, FileTime modified, long since) {
+    }
+}
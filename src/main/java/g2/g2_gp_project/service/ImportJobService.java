@@ -0,0 +1,365 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.DataImportResult;
+import g2.g2_gp_project.dto.ImportJobStatus;
+import g2.g2_gp_project.dto.ImportOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs file imports as background jobs on a bounded executor, so uploads
+ * return immediately and progress can be polled by job ID.
+ */
+@Service
+@Slf4j
+public class ImportJobService {
+
+    private final DataImportService dataImportService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${etl.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    /**
+     * Server-side directory whose files can be imported without an upload; empty disables it
+     */
+    @Value("${etl.drop-dir:}")
+    private String dropDir;
+
+    public ImportJobService(DataImportService dataImportService,
+                            @Value("${etl.jobs.max-concurrent:2}") int maxConcurrent,
+                            @Value("${etl.jobs.queue-capacity:10}") int queueCapacity) {
+        this.dataImportService = dataImportService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "import-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Copy the upload to a temp file (the multipart file is deleted when the
+     * request ends) and queue it for import.
+     *
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submit(MultipartFile file) throws IOException {
+        return submit(file, new ImportOptions());
+    }
+
+    /**
+     * Queue an upload for import with options, e.g. analyze-and-import
+     *
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submit(MultipartFile file, ImportOptions options) throws IOException {
+        Path tempFile = Files.createTempFile("import-job-", ".upload");
+        file.transferTo(tempFile);
+        return submit(tempFile, file.getOriginalFilename(), true, options, null);
+    }
+
+    /**
+     * Queue an import of a file on disk.
+     *
+     * @param deleteWhenDone delete the file after the job finishes
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submit(Path path, String fileName, boolean deleteWhenDone) {
+        return submit(path, fileName, deleteWhenDone, null);
+    }
+
+    /**
+     * Queue an import of a file on disk and call back with the final status
+     * when the job has finished (on the worker thread). The file is read in
+     * place, see {@link ImportOptions#isReadInPlace()}.
+     *
+     * @param onFinish called once the job has finished, may be null
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submit(Path path, String fileName, boolean deleteWhenDone,
+                                  Consumer<ImportJobStatus> onFinish) {
+        return submit(path, fileName, deleteWhenDone, ImportOptions.builder().readInPlace(true).build(), onFinish);
+    }
+
+    private ImportJobStatus submit(Path path, String fileName, boolean deleteWhenDone, ImportOptions options,
+                                   Consumer<ImportJobStatus> onFinish) {
+        removeExpiredJobs();
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName);
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> run(job, path, deleteWhenDone, options, onFinish));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            if (deleteWhenDone) {
+                deleteQuietly(path);
+            }
+            throw new IllegalStateException("Too many import jobs are queued. Please try again later.");
+        }
+        log.info("Queued import job {} for file {}", job.jobId, fileName);
+        return job.toStatus();
+    }
+
+    /**
+     * Queue an import of a file in the drop directory. The file is read in place
+     * and left where it is.
+     *
+     * @throws IllegalArgumentException if the name does not resolve to a CSV/XLSX file inside the drop directory
+     * @throws IllegalStateException if no drop directory is configured or the job queue is full
+     */
+    public ImportJobStatus submitLocal(String fileName) {
+        Path file = resolveDropFile(fileName);
+        return submit(file, file.getFileName().toString(), false);
+    }
+
+    /**
+     * Importable files currently in the drop directory
+     */
+    public List<String> listDropFiles() throws IOException {
+        Path dir = getDropDir();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .map(path -> path.getFileName().toString())
+                    .filter(ImportJobService::isSupportedFile)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path resolveDropFile(String fileName) {
+        Path dir = getDropDir();
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        // Reject anything that would leave the drop directory (../, absolute paths)
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.startsWith(dir) || !file.getParent().equals(dir)) {
+            throw new IllegalArgumentException("File must be directly inside the drop directory");
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("File not found in drop directory: " + fileName);
+        }
+        try {
+            // A symlink in the drop directory must not point outside of it
+            if (!file.toRealPath().startsWith(dir.toRealPath())) {
+                throw new IllegalArgumentException("File must be directly inside the drop directory");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read file: " + fileName);
+        }
+        if (!isSupportedFile(file.getFileName().toString())) {
+            throw new IllegalArgumentException("Invalid file format. Only CSV, Excel (.xlsx) and compressed CSV files are supported.");
+        }
+        return file;
+    }
+
+    private Path getDropDir() {
+        if (dropDir == null || dropDir.isBlank()) {
+            throw new IllegalStateException("No drop directory is configured (etl.drop-dir)");
+        }
+        return Path.of(dropDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * CSV, Excel (.xlsx) and compressed CSV (.csv.gz, .csv.zst, .zip) files can be imported
+     */
+    public static boolean isSupportedFile(String fileName) {
+        String lowerCaseFileName = fileName.toLowerCase();
+        return lowerCaseFileName.endsWith(".csv") || lowerCaseFileName.endsWith(".xlsx")
+                || lowerCaseFileName.endsWith(".csv.gz") || lowerCaseFileName.endsWith(".csv.zst")
+                || lowerCaseFileName.endsWith(".zip");
+    }
+
+    /**
+     * Queue a resume of a chunked import from its last committed checkpoint
+     *
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submitResume(String importBatchId) {
+        removeExpiredJobs();
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), "resume:" + importBatchId);
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> runJob(job,
+                    () -> dataImportService.resumeImport(importBatchId, job.progress)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            throw new IllegalStateException("Too many import jobs are queued. Please try again later.");
+        }
+        log.info("Queued resume job {} for import batch {}", job.jobId, importBatchId);
+        return job.toStatus();
+    }
+
+    /**
+     * Queue a replay of the rejected rows of an import batch, optionally only those with one reason code
+     *
+     * @throws IllegalStateException if the job queue is full
+     */
+    public ImportJobStatus submitReplay(String importBatchId, String reason) {
+        removeExpiredJobs();
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), "replay:" + importBatchId);
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> runJob(job,
+                    () -> dataImportService.replayRejected(importBatchId, reason, job.progress)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            throw new IllegalStateException("Too many import jobs are queued. Please try again later.");
+        }
+        log.info("Queued replay job {} for rejected rows of import batch {}", job.jobId, importBatchId);
+        return job.toStatus();
+    }
+
+    public ImportJobStatus getStatus(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        return job != null ? job.toStatus() : null;
+    }
+
+    /**
+     * Request cancellation; a running job stops at its next safe point and
+     * discards the rows it staged.
+     *
+     * @return false if the job does not exist or has already finished
+     */
+    public boolean cancel(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || job.finishedAt != null) {
+            return false;
+        }
+        job.progress.requestCancel();
+        log.info("Cancellation requested for import job {}", jobId);
+        return true;
+    }
+
+    private void run(ImportJob job, Path path, boolean deleteWhenDone, ImportOptions options,
+                     Consumer<ImportJobStatus> onFinish) {
+        try {
+            runJob(job, () -> dataImportService.processAndLoadFile(
+                    new FileSystemResource(path), job.fileName, job.progress, options));
+            if (onFinish != null) {
+                try {
+                    onFinish.accept(job.toStatus());
+                } catch (Exception e) {
+                    log.error("Completion callback of import job {} failed", job.jobId, e);
+                }
+            }
+        } finally {
+            if (deleteWhenDone) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private void runJob(ImportJob job, Supplier<DataImportResult> importer) {
+        try {
+            if (job.progress.isCancelRequested()) {
+                job.finish("CANCELLED", "Import cancelled before it started", null);
+                return;
+            }
+            job.state = "RUNNING";
+            DataImportResult result = importer.get();
+
+            if (result.isSuccess()) {
+                job.finish("COMPLETED", result.getMessage(), result);
+            } else if (job.progress.isCancelRequested()) {
+                job.finish("CANCELLED", result.getMessage(), result);
+            } else {
+                job.finish("FAILED", result.getMessage(), result);
+            }
+        } catch (Exception e) {
+            log.error("Import job {} failed", job.jobId, e);
+            job.finish("FAILED", "Error: " + e.getMessage(), null);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.progress.requestCancel());
+        executor.shutdown();
+    }
+
+    /**
+     * Mutable job record; fields are written by the worker and read by status requests
+     */
+    private static class ImportJob {
+        private final String jobId;
+        private final String fileName;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final ImportProgress progress = new ImportProgress();
+        private volatile String state = "QUEUED";
+        private volatile String message;
+        private volatile DataImportResult result;
+        private volatile LocalDateTime finishedAt;
+
+        ImportJob(String jobId, String fileName) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+        }
+
+        void finish(String state, String message, DataImportResult result) {
+            this.message = message;
+            this.result = result;
+            this.state = state;
+            this.finishedAt = LocalDateTime.now();
+        }
+
+        ImportJobStatus toStatus() {
+            return ImportJobStatus.builder()
+                    .jobId(jobId)
+                    .fileName(fileName)
+                    .state(state)
+                    .phase(progress.getPhase().name())
+                    .rowsProcessed(progress.getRowsProcessed())
+                    .totalRows(progress.getTotalRows())
+                    .rowsPerSecond(progress.getRowsPerSecond())
+                    .etaSeconds(progress.getEtaSeconds())
+                    .stages(progress.getStageStatuses())
+                    .submittedAt(submittedAt)
+                    .finishedAt(finishedAt)
+                    .message(message)
+                    .result(result)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.PipelineStageStatus;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Live progress of one import, updated by the ETL pipeline and read by the job
+ * status endpoint from another thread. Also carries the cancellation flag,
+ * which the pipeline checks between rows and chunks.
+ */
+public class ImportProgress {
+
+    /**
+     * TRANSFORM also covers loading into PostgreSQL: each segment is loaded as soon
+     * as it is transformed, so there is no separate load phase. The load backlog
+     * is reported by the "load" stage when the pipeline is on.
+     */
+    public enum Phase {
+        QUEUED, EXTRACT, TRANSFORM, DONE
+    }
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile long phaseStartedAt = System.currentTimeMillis();
+    private volatile long totalRows;
+    private volatile long totalBytes;
+    private volatile LongSupplier bytesRead = () -> 0;
+    private volatile boolean cancelRequested;
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final List<PipelineStage<?>> stages = new CopyOnWriteArrayList<>();
+
+    /**
+     * Start a new phase; the row counter restarts from zero
+     */
+    public void startPhase(Phase phase, long totalRows) {
+        this.stages.clear();
+        this.rowsProcessed.set(0);
+        this.totalRows = totalRows;
+        this.phaseStartedAt = System.currentTimeMillis();
+        this.phase = phase;
+    }
+
+    /**
+     * Track extract progress by bytes, since the row count of a file is unknown up front
+     */
+    public void trackBytes(LongSupplier bytesRead, long totalBytes) {
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Report a pipeline stage of the current phase on the job status
+     */
+    void addStage(PipelineStage<?> stage) {
+        stages.add(stage);
+    }
+
+    /**
+     * Throughput and queue depth of each pipeline stage of the current phase
+     */
+    public List<PipelineStageStatus> getStageStatuses() {
+        return stages.stream().map(PipelineStage::toStatus).toList();
+    }
+
+    public void rowProcessed() {
+        rowsProcessed.incrementAndGet();
+    }
+
+    public void requestCancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Throw if cancellation was requested; called by the pipeline at safe points
+     */
+    public void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getRowsProcessed() {
+        return rowsProcessed.get();
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getPhaseStartedAt() {
+        return phaseStartedAt;
+    }
+
+    public double getRowsPerSecond() {
+        long elapsed = System.currentTimeMillis() - phaseStartedAt;
+        return elapsed > 0 ? rowsProcessed.get() * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * Estimated seconds left in the current phase, or -1 if unknown
+     */
+    public long getEtaSeconds() {
+        long elapsed = System.currentTimeMillis() - phaseStartedAt;
+        if (elapsed <= 0) return -1;
+
+        if (phase == Phase.EXTRACT && totalBytes > 0) {
+            long read = bytesRead.getAsLong();
+            if (read <= 0) return -1;
+            return (totalBytes - read) * elapsed / read / 1000;
+        }
+
+        long done = rowsProcessed.get();
+        if (totalRows > 0 && done > 0) {
+            return (totalRows - done) * elapsed / done / 1000;
+        }
+        return -1;
+    }
+}
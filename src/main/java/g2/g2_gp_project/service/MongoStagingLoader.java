@@ -0,0 +1,90 @@
+package g2.g2_gp_project.service;
+
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import g2.g2_gp_project.entity.RawTransaction;
+import g2.g2_gp_project.entity.RejectedTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Appends raw rows to the staging collection with unordered bulk inserts.
+ * Unlike MongoRepository.saveAll there is no per-entity save/upsert and nothing
+ * is read back. It uses its own MongoTemplate, so the staging write concern
+ * does not change the one used by the repositories.
+ */
+@Component
+@Slf4j
+public class MongoStagingLoader {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate stagingTemplate;
+    private final boolean acknowledged;
+
+    public MongoStagingLoader(MongoTemplate mongoTemplate,
+                              @Value("${etl.import.mongo-write-concern:ACKNOWLEDGED}") String writeConcernName) {
+        WriteConcern writeConcern = WriteConcern.valueOf(writeConcernName);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown etl.import.mongo-write-concern: " + writeConcernName);
+        }
+        this.stagingTemplate = new MongoTemplate(mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter());
+        this.stagingTemplate.setWriteConcern(writeConcern);
+        this.acknowledged = writeConcern.isAcknowledged();
+        log.info("Raw staging uses unordered bulk inserts with write concern {}", writeConcernName);
+    }
+
+    /**
+     * Insert the rows in one unordered bulk write. Rows rejected because their
+     * fingerprint is already staged (duplicate key) are skipped; any other
+     * write error fails the import.
+     *
+     * @return number of rows inserted (the row count when writes are unacknowledged)
+     */
+    public int insert(List<RawTransaction> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            BulkWriteResult result = stagingTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RawTransaction.class)
+                    .insert(rows)
+                    .execute();
+            // Unacknowledged results carry no counts
+            return acknowledged ? result.getInsertedCount() : rows.size();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    throw e;
+                }
+            }
+            log.info("Skipped {} rows that were staged concurrently", e.getErrors().size());
+            return e.getResult().getInsertedCount();
+        }
+    }
+
+    /**
+     * Write rejected rows in one unordered bulk write, replacing earlier
+     * rejections of the same row (same id)
+     */
+    public void upsertRejected(List<RejectedTransaction> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = stagingTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RejectedTransaction.class);
+        for (RejectedTransaction row : rows) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(row.getId())), row,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+    }
+}
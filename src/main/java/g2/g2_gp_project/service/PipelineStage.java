@@ -0,0 +1,147 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.PipelineStageStatus;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * One stage of the import pipeline: a worker thread that handles items from a
+ * bounded queue in order. A full queue blocks the producer, so a fast parser
+ * cannot run ahead of a slow loader. The first failure of the worker is
+ * rethrown to the producer on its next submit or on finish.
+ */
+class PipelineStage<T> {
+
+    private static final Object END = new Object();
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final String name;
+    private final BlockingQueue<Object> queue;
+    private final ToIntFunction<T> rowCounter;
+    private final Consumer<T> handler;
+    private final Thread worker;
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+
+    /**
+     * @param rowCounter number of rows in an item, for the throughput figures
+     * @param runner     runs the worker loop, e.g. inside one transaction; the loop
+     *                   throws if the stage is aborted
+     */
+    PipelineStage(String name, int capacity, ToIntFunction<T> rowCounter, Consumer<T> handler,
+                  Consumer<Runnable> runner) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.rowCounter = rowCounter;
+        this.handler = handler;
+        this.worker = new Thread(() -> {
+            try {
+                runner.accept(this::drain);
+            } catch (Throwable t) {
+                failure = t;
+                queue.clear(); // unblock the producer
+            }
+        }, "import-" + name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue an item, waiting while the queue is full
+     */
+    void submit(T item) {
+        put(item);
+    }
+
+    /**
+     * Wait until all queued items are handled
+     */
+    void finish() {
+        put(END);
+        join();
+        rethrowFailure();
+    }
+
+    /**
+     * Stop the worker without handling the remaining items; no-op after finish
+     */
+    void abort() {
+        if (!worker.isAlive()) return;
+        aborted = true;
+        queue.clear();
+        worker.interrupt();
+        join();
+    }
+
+    PipelineStageStatus toStatus() {
+        double elapsedNanos = Math.max(1, System.nanoTime() - startedAt);
+        return PipelineStageStatus.builder()
+                .name(name)
+                .rowsProcessed(rowsProcessed.get())
+                .rowsPerSecond(rowsProcessed.get() * 1_000_000_000.0 / elapsedNanos)
+                .busyPercent(Math.min(100.0, busyNanos.get() * 100.0 / elapsedNanos))
+                .queueDepth(queue.size())
+                .queueCapacity(queue.size() + queue.remainingCapacity())
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Import pipeline stage " + name + " aborted");
+            }
+            if (aborted) {
+                throw new CancellationException("Import pipeline stage " + name + " aborted");
+            }
+            if (item == END) {
+                return;
+            }
+            long start = System.nanoTime();
+            handler.accept((T) item);
+            busyNanos.addAndGet(System.nanoTime() - start);
+            rowsProcessed.addAndGet(rowCounter.applyAsInt((T) item));
+        }
+    }
+
+    private void put(Object item) {
+        try {
+            while (!queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                rethrowFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Import interrupted");
+        }
+        rethrowFailure();
+    }
+
+    private void join() {
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rethrowFailure() {
+        Throwable t = failure;
+        if (t == null) return;
+        if (t instanceof RuntimeException runtimeException) throw runtimeException;
+        if (t instanceof Error error) throw error;
+        throw new IllegalStateException("Import pipeline stage " + name + " failed: " + t.getMessage(), t);
+    }
+}
@@ -0,0 +1,134 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.Order;
+import g2.g2_gp_project.entity.OrderItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+/**
+ * Bulk loader that streams orders and order items into PostgreSQL with
+ * COPY ... FROM STDIN instead of one INSERT per row.
+ * It uses the connection bound to the current Spring transaction, so the
+ * copied rows commit or roll back together with the rest of the import.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresCopyLoader {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String COPY_ORDERS_SQL =
+            "COPY orders (order_id, customer_id, order_date, status, subtotal, tax, shipping_fee, " +
+            "total_amount, payment_method, shipping_address, created_at, updated_at) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String COPY_ORDER_ITEMS_SQL =
+            "COPY order_items (order_id, product_id, quantity, unit_price) FROM STDIN WITH (FORMAT csv)";
+
+    private final DataSource dataSource;
+
+    /**
+     * Copy new orders into the orders table. Orders must not exist yet.
+     *
+     * @return number of rows copied
+     */
+    public long copyOrders(Collection<Order> orders) {
+        LocalDateTime now = LocalDateTime.now();
+        return copyIn(COPY_ORDERS_SQL, orders, (line, order) -> {
+            appendValue(line, order.getOrderId()).append(',');
+            appendValue(line, order.getCustomer().getCustomerId()).append(',');
+            appendValue(line, order.getOrderDate()).append(',');
+            appendValue(line, order.getStatus()).append(',');
+            appendValue(line, order.getSubtotal()).append(',');
+            appendValue(line, order.getTax()).append(',');
+            appendValue(line, order.getShippingFee()).append(',');
+            appendValue(line, order.getTotalAmount()).append(',');
+            appendValue(line, order.getPaymentMethod()).append(',');
+            appendValue(line, order.getShippingAddress()).append(',');
+            appendValue(line, now).append(',');
+            appendValue(line, now);
+        });
+    }
+
+    /**
+     * Copy order items into the order_items table; item_id is generated by the database
+     *
+     * @return number of rows copied
+     */
+    public long copyOrderItems(Collection<OrderItem> items) {
+        return copyIn(COPY_ORDER_ITEMS_SQL, items, (line, item) -> {
+            appendValue(line, item.getOrder().getOrderId()).append(',');
+            appendValue(line, item.getProduct().getStockCode()).append(',');
+            appendValue(line, item.getQuantity()).append(',');
+            appendValue(line, item.getUnitPrice());
+        });
+    }
+
+    private <T> long copyIn(String sql, Collection<T> rows, BiConsumer<StringBuilder, T> rowFormatter) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+                StringBuilder line = new StringBuilder(256);
+                for (T row : rows) {
+                    line.setLength(0);
+                    rowFormatter.accept(line, row);
+                    line.append('\n');
+                    writer.append(line);
+                }
+                writer.flush();
+                return out.endCopy();
+            } catch (IOException | RuntimeException e) {
+                if (out.isActive()) {
+                    out.cancelCopy();
+                }
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("COPY failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Append one CSV field: null stays unquoted (NULL), everything else is quoted
+     */
+    private StringBuilder appendValue(StringBuilder line, Object value) {
+        if (value == null) {
+            return line;
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+}
@@ -0,0 +1,118 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.Customer;
+import g2.g2_gp_project.entity.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes customers and products with multi-row
+ * INSERT ... ON CONFLICT DO UPDATE statements. With assigned ids, JPA saveAll
+ * merges each entity and so selects it first; here a whole batch of rows costs
+ * one round trip. Only the columns set by the import are updated on conflict,
+ * other columns (name, email, category, ...) keep their values, and like the
+ * JPA merge path a null or empty incoming value never replaces a stored one.
+ * Runs on the connection of the current Spring transaction, like {@link PostgresCopyLoader}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresUpsertLoader {
+
+    private static final String UPSERT_CUSTOMERS_SQL =
+            "INSERT INTO customers (customer_id, country) VALUES %s " +
+            "ON CONFLICT (customer_id) DO UPDATE SET country = COALESCE(NULLIF(EXCLUDED.country, ''), customers.country)";
+
+    private static final String UPSERT_PRODUCTS_SQL =
+            "INSERT INTO products (stock_code, description, unit_price) VALUES %s " +
+            "ON CONFLICT (stock_code) DO UPDATE SET " +
+            "description = COALESCE(NULLIF(EXCLUDED.description, ''), products.description), " +
+            "unit_price = COALESCE(EXCLUDED.unit_price, products.unit_price)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Rows per INSERT statement; PostgreSQL allows at most 65535 bind parameters per statement
+     */
+    @Value("${etl.load.upsert-batch-size:1000}")
+    private int upsertBatchSize;
+
+    /**
+     * Insert or update customers; ids must be unique within the collection
+     *
+     * @return number of rows written
+     */
+    public int upsertCustomers(Collection<Customer> customers) {
+        return upsert(UPSERT_CUSTOMERS_SQL, 2, customers, (args, customer) -> {
+            args.add(customer.getCustomerId());
+            args.add(customer.getCountry());
+        });
+    }
+
+    /**
+     * Insert or update products; stock codes must be unique within the collection
+     *
+     * @return number of rows written
+     */
+    public int upsertProducts(Collection<Product> products) {
+        return upsert(UPSERT_PRODUCTS_SQL, 3, products, (args, product) -> {
+            args.add(product.getStockCode());
+            args.add(product.getDescription());
+            args.add(product.getUnitPrice());
+        });
+    }
+
+    private <T> int upsert(String sqlTemplate, int columnCount, Collection<T> rows,
+                           BiConsumer<List<Object>, T> rowBinder) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        String rowPlaceholder = "(" + String.join(", ", Collections.nCopies(columnCount, "?")) + ")";
+        int batchSize = Math.max(1, Math.min(upsertBatchSize, 65535 / columnCount));
+        String fullBatchSql = null;
+
+        int written = 0;
+        int statements = 0;
+        List<Object> args = new ArrayList<>(Math.min(rows.size(), batchSize) * columnCount);
+        int batchRows = 0;
+        for (T row : rows) {
+            rowBinder.accept(args, row);
+            if (++batchRows == batchSize) {
+                if (fullBatchSql == null) {
+                    fullBatchSql = buildSql(sqlTemplate, rowPlaceholder, batchSize);
+                }
+                written += jdbcTemplate.update(fullBatchSql, args.toArray());
+                statements++;
+                args.clear();
+                batchRows = 0;
+            }
+        }
+        if (batchRows > 0) {
+            written += jdbcTemplate.update(buildSql(sqlTemplate, rowPlaceholder, batchRows), args.toArray());
+            statements++;
+        }
+        log.debug("Upserted {} rows in {} statements", written, statements);
+        return written;
+    }
+
+    private String buildSql(String sqlTemplate, String rowPlaceholder, int rowCount) {
+        StringBuilder values = new StringBuilder(rowCount * (rowPlaceholder.length() + 2));
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append(rowPlaceholder);
+        }
+        return String.format(sqlTemplate, values);
+    }
+}
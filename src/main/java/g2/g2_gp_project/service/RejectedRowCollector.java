@@ -0,0 +1,106 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.RawTransaction;
+import g2.g2_gp_project.entity.RejectedTransaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Collects the rows rejected by one import phase and writes them to
+ * transactions_rejected in batches, keeping a count per reason code instead of
+ * logging every row. Values of loaded rows that fell back to a default are
+ * counted the same way. Safe to use from the parallel transform workers.
+ */
+class RejectedRowCollector {
+
+    private final MongoStagingLoader mongoStagingLoader;
+    private final int batchSize;
+    private final List<RejectedTransaction> pending = new ArrayList<>();
+    private final Map<String, Long> counts = new TreeMap<>();
+    private final Map<String, Long> defaultedCounts = new TreeMap<>();
+    private final Set<String> rejectedIds; // only tracked for replays
+
+    RejectedRowCollector(MongoStagingLoader mongoStagingLoader, int batchSize, boolean trackIds) {
+        this.mongoStagingLoader = mongoStagingLoader;
+        this.batchSize = Math.max(1, batchSize);
+        this.rejectedIds = trackIds ? new HashSet<>() : null;
+    }
+
+    /**
+     * Id of the rejected document of a row: the same row always maps to the same document
+     */
+    private static String idOf(String importBatchId, String fileName, Integer rowNumber) {
+        return importBatchId + ":" + fileName + ":" + rowNumber;
+    }
+
+    synchronized void reject(RawTransaction raw, String reason, String message) {
+        RejectedTransaction rejected = new RejectedTransaction();
+        rejected.setId(idOf(raw.getImportBatchId(), raw.getFileName(), raw.getRowNumber()));
+        rejected.setImportBatchId(raw.getImportBatchId());
+        rejected.setFileName(raw.getFileName());
+        rejected.setRowNumber(raw.getRowNumber());
+        rejected.setReason(reason);
+        rejected.setMessage(message);
+        rejected.setInvoiceNo(raw.getInvoiceNo());
+        rejected.setStockCode(raw.getStockCode());
+        rejected.setDescription(raw.getDescription());
+        rejected.setQuantity(raw.getQuantity());
+        rejected.setInvoiceDate(raw.getInvoiceDate());
+        rejected.setUnitPrice(raw.getUnitPrice());
+        rejected.setCustomerId(raw.getCustomerId());
+        rejected.setCountry(raw.getCountry());
+        rejected.setRejectedAt(LocalDateTime.now());
+
+        pending.add(rejected);
+        counts.merge(reason, 1L, Long::sum);
+        if (rejectedIds != null) {
+            rejectedIds.add(rejected.getId());
+        }
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Count a value that could not be parsed and was replaced by a default; the row itself is kept
+     */
+    synchronized void defaulted(String reason) {
+        defaultedCounts.merge(reason, 1L, Long::sum);
+    }
+
+    synchronized void flush() {
+        mongoStagingLoader.upsertRejected(pending);
+        pending.clear();
+    }
+
+    /**
+     * Rejected rows per reason code
+     */
+    synchronized Map<String, Long> getCounts() {
+        return new TreeMap<>(counts);
+    }
+
+    /**
+     * Values replaced by a default, per reason code
+     */
+    synchronized Map<String, Long> getDefaultedCounts() {
+        return new TreeMap<>(defaultedCounts);
+    }
+
+    synchronized long getTotal() {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Ids rejected so far; only available when created with trackIds
+     */
+    synchronized Set<String> getRejectedIds() {
+        return rejectedIds != null ? new HashSet<>(rejectedIds) : Set.of();
+    }
+}
@@ -0,0 +1,220 @@
+package g2.g2_gp_project.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV reader for files on the server's disk. The file is read from a
+ * {@link FileChannel} into one reused buffer and split into records by a
+ * byte-level state machine, so there is no Reader/decoder pass over the whole
+ * file; only field values are decoded (UTF-8). Nothing is memory-mapped, so
+ * the file is released as soon as the reader is closed and can then be moved
+ * or deleted on any platform.
+ *
+ * Quoted fields may contain delimiters, doubled quotes and line breaks.
+ * Values are trimmed and empty values are returned as null, and empty lines
+ * are skipped, matching the CSVFormat used for uploads. Records the upload
+ * parser would fail on (text after a closing quote, a quote left open at the
+ * end of the file) are still passed on, with the problem described, so the
+ * caller can reject them one by one.
+ */
+public class ChannelCsvReader implements Closeable {
+
+    /**
+     * Receives one record at a time; the list is reused between records.
+     * error is null for a well-formed record; otherwise it says what is wrong
+     * and the fields are a best effort.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handleRecord(int recordNumber, List<String> fields, String error);
+    }
+
+    // Read size; also the longest header line that can be read
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private volatile long position;
+
+    public ChannelCsvReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Bytes consumed so far; safe to read from another thread for progress
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * The header line (without line break or BOM), or null for an empty file.
+     * Used to detect the delimiter before reading records.
+     */
+    public String readHeaderLine() throws IOException {
+        if (size == 0) return null;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, BUFFER_SIZE));
+        channel.read(buffer, 0);
+        buffer.flip();
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') break;
+            if (b != '\r') line.write(b);
+        }
+        return stripBom(line.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read all records (the header included, as record 1) and pass them to the handler
+     */
+    public void read(char delimiter, RecordHandler handler) throws IOException {
+        RecordSplitter splitter = new RecordSplitter((byte) delimiter, handler);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long offset = 0;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read < 0) break;
+            // State is carried in the splitter, so records may span reads
+            for (int i = 0; i < read; i++) {
+                splitter.accept(bytes[i]);
+            }
+            offset += read;
+            position = offset;
+        }
+        splitter.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static String stripBom(String value) {
+        return !value.isEmpty() && value.charAt(0) == '\uFEFF' ? value.substring(1) : value;
+    }
+
+    /**
+     * Byte-level CSV state machine. Delimiters, quotes and line breaks are ASCII,
+     * so splitting on bytes is safe for UTF-8 content.
+     */
+    private static class RecordSplitter {
+        private final byte delimiter;
+        private final RecordHandler handler;
+        private final List<String> fields = new ArrayList<>();
+        private byte[] field = new byte[256];
+        private int fieldLength;
+        private boolean inQuotes;
+        private boolean quoteInQuotes; // saw '"' inside quotes: either an escaped quote or the closing one
+        private boolean fieldQuoted;
+        private boolean lineEmpty = true;
+        private int recordNumber;
+        private String error;
+
+        RecordSplitter(byte delimiter, RecordHandler handler) {
+            this.delimiter = delimiter;
+            this.handler = handler;
+        }
+
+        void accept(byte b) {
+            if (quoteInQuotes) {
+                quoteInQuotes = false;
+                if (b == '"') {
+                    append(b);
+                    return;
+                }
+                inQuotes = false;
+                // Fall through: b follows the closing quote
+            } else if (inQuotes) {
+                if (b == '"') {
+                    quoteInQuotes = true;
+                } else {
+                    append(b);
+                }
+                return;
+            }
+
+            if (b == '"' && !fieldQuoted && isBlank()) {
+                // Opening quote; surrounding spaces are ignored like with the upload parser
+                fieldLength = 0;
+                inQuotes = true;
+                fieldQuoted = true;
+                lineEmpty = false;
+            } else if (b == delimiter) {
+                endField();
+                lineEmpty = false;
+            } else if (b == '\n') {
+                endRecord();
+            } else if (b != '\r') {
+                if (fieldQuoted && b != ' ' && b != '\t' && error == null) {
+                    error = "Unexpected character after a closing quote in field " + (fields.size() + 1);
+                }
+                append(b);
+                lineEmpty = false;
+            }
+        }
+
+        void finish() {
+            if (quoteInQuotes) {
+                quoteInQuotes = false;
+                inQuotes = false;
+            } else if (inQuotes) {
+                inQuotes = false;
+                error = "Quoted field " + (fields.size() + 1) + " is not closed before the end of the file";
+            }
+            if (!lineEmpty || fieldLength > 0 || !fields.isEmpty()) {
+                endRecord();
+            }
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                byte[] grown = new byte[field.length * 2];
+                System.arraycopy(field, 0, grown, 0, fieldLength);
+                field = grown;
+            }
+            field[fieldLength++] = b;
+        }
+
+        private boolean isBlank() {
+            for (int i = 0; i < fieldLength; i++) {
+                if (field[i] != ' ' && field[i] != '\t') return false;
+            }
+            return true;
+        }
+
+        private void endField() {
+            String value = new String(field, 0, fieldLength, StandardCharsets.UTF_8).trim();
+            if (fields.isEmpty() && recordNumber == 0) {
+                value = stripBom(value);
+            }
+            fields.add(value.isEmpty() ? null : value);
+            fieldLength = 0;
+            fieldQuoted = false;
+        }
+
+        private void endRecord() {
+            if (lineEmpty && fieldLength == 0 && fields.isEmpty()) {
+                return;
+            }
+            endField();
+            recordNumber++;
+            handler.handleRecord(recordNumber, fields, error);
+            fields.clear();
+            lineEmpty = true;
+            error = null;
+        }
+    }
+}
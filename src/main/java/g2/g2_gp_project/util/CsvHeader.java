@@ -0,0 +1,100 @@
+package g2.g2_gp_project.util;
+
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Delimiter and column names of a CSV header line.
+ * Shared by the import and the data quality analysis, so both read a file
+ * with the same dialect.
+ */
+public class CsvHeader {
+
+    // Reader buffer size; also the longest header line that can be sniffed and rewound
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final char delimiter;
+    private final List<String> names;
+
+    private CsvHeader(char delimiter, List<String> names) {
+        this.delimiter = delimiter;
+        this.names = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Read the header line, then rewind the reader so a parser sees the header
+     * again; the reader must be buffered with at least {@link #BUFFER_SIZE}
+     */
+    public static CsvHeader sniff(BufferedReader reader) throws IOException {
+        reader.mark(BUFFER_SIZE);
+        String firstLine = reader.readLine();
+        reader.reset();
+        return parse(firstLine);
+    }
+
+    /**
+     * Parse a header line: trailing delimiters are dropped, the delimiter is
+     * ';', ',' or tab (first present, in that order) and empty names are skipped
+     */
+    public static CsvHeader parse(String firstLine) {
+        if (firstLine == null || firstLine.trim().isEmpty()) {
+            throw new IllegalArgumentException("CSV file is empty");
+        }
+
+        firstLine = firstLine.replaceAll("[,;\\t]+$", "");
+        char delimiter = ',';
+        if (firstLine.contains(";")) {
+            delimiter = ';';
+        } else if (firstLine.contains(",")) {
+            delimiter = ',';
+        } else if (firstLine.contains("\t")) {
+            delimiter = '\t';
+        }
+
+        List<String> names = new ArrayList<>();
+        for (String header : firstLine.split(String.valueOf(delimiter))) {
+            if (!header.trim().isEmpty()) {
+                names.add(header.trim());
+            }
+        }
+        return new CsvHeader(delimiter, names);
+    }
+
+    /**
+     * Commons CSV format that skips the header line and names the columns
+     */
+    public CSVFormat toFormat() {
+        return CSVFormat.DEFAULT
+                .builder()
+                .setDelimiter(delimiter)
+                .setHeader(names.toArray(new String[0]))
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .setTrim(true)
+                .setIgnoreEmptyLines(true)
+                .setIgnoreSurroundingSpaces(true)
+                .setNullString("")
+                .setAllowMissingColumnNames(true)
+                .build();
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Delimiter as shown in log messages
+     */
+    public String describeDelimiter() {
+        return delimiter == '\t' ? "tab" : String.valueOf(delimiter);
+    }
+}
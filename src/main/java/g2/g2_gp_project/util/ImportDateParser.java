@@ -0,0 +1,239 @@
+package g2.g2_gp_project.util;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Parses the InvoiceDate values of one import file.
+ *
+ * The common layouts (d/M/yyyy H:mm, M/d/yyyy H:mm and yyyy-MM-dd HH:mm:ss with
+ * a space or 'T') are scanned by hand without exceptions. Whether slash dates are
+ * day-first or month-first is decided from a sample of the file's values, so
+ * ambiguous dates such as 03/04/2011 are read the same way throughout a file.
+ * When the sample holds no unambiguous date, the historical precedence is kept:
+ * dd/MM when day and month both have two digits, M/d otherwise (so the
+ * "12/1/2010 8:26" of the Online Retail export is 1 December).
+ * Anything else falls back to precompiled formatters.
+ *
+ * One instance per file; safe to share between transform threads once sniffed.
+ */
+public class ImportDateParser {
+
+    /**
+     * Number of values looked at before the slash-date layout is fixed
+     */
+    public static final int SAMPLE_SIZE = 100;
+
+    private static final List<DateTimeFormatter> FALLBACK_FORMATTERS = List.of(
+            DateTimeFormatter.ofPattern("dd/MM/yyyy H:mm"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"),
+            DateTimeFormatter.ofPattern("M/d/yyyy H:mm"),
+            DateTimeFormatter.ofPattern("M/d/yyyy HH:mm"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")
+    );
+
+    private enum SlashLayout {
+        DAY_FIRST, MONTH_FIRST,
+        /** Undecided: two-digit day and month are day-first, anything else month-first */
+        BY_WIDTH
+    }
+
+    private volatile SlashLayout slashLayout;
+    private int sampled;
+
+    /**
+     * Decide the slash-date layout from up to {@link #SAMPLE_SIZE} values up front.
+     * Without a sniff the layout is learned from the first values passed to parse.
+     */
+    public synchronized void sniff(Iterable<String> values) {
+        for (String value : values) {
+            if (slashLayout != null || sampled >= SAMPLE_SIZE) {
+                break;
+            }
+            observe(value);
+        }
+        if (slashLayout == null) {
+            slashLayout = SlashLayout.BY_WIDTH;
+        }
+    }
+
+    /**
+     * Parse a date, or return null if it matches none of the supported layouts
+     */
+    public LocalDateTime parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+
+        if (slashLayout == null) {
+            synchronized (this) {
+                if (slashLayout == null && sampled < SAMPLE_SIZE) {
+                    observe(text);
+                }
+            }
+        }
+
+        long[] fields = new long[8];
+        LocalDateTime parsed = null;
+        if (scanSlashDate(text, fields)) {
+            parsed = resolveSlashDate(fields);
+        } else if (scanIsoDate(text, fields)) {
+            parsed = toDateTime(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+        }
+        return parsed != null ? parsed : parseWithFormatters(text);
+    }
+
+    /**
+     * Whether the slash-date layout has been decided; before that, ambiguous
+     * dates use the historical precedence and may be read differently later
+     */
+    public boolean isLayoutKnown() {
+        return slashLayout != null;
+    }
+
+    /**
+     * Whether parse(value) is final: true once the layout is known, and for
+     * values that read the same under any layout (ISO dates, 13/05/2011,
+     * 05/05/2011). Only ambiguous slash dates parsed before that may be read
+     * differently later.
+     */
+    public boolean isSettled(String value) {
+        if (slashLayout != null || value == null) {
+            return true;
+        }
+        long[] fields = new long[8];
+        if (!scanSlashDate(value.trim(), fields)) {
+            return true;
+        }
+        return fields[0] > 12 || fields[1] > 12 || fields[0] == fields[1];
+    }
+
+    public boolean isValid(String value) {
+        return parse(value) != null;
+    }
+
+    private void observe(String value) {
+        long[] fields = new long[8];
+        if (value == null || !scanSlashDate(value.trim(), fields)) {
+            return;
+        }
+        sampled++;
+        if (fields[0] > 12 && fields[1] <= 12) {
+            slashLayout = SlashLayout.DAY_FIRST;
+        } else if (fields[1] > 12 && fields[0] <= 12) {
+            slashLayout = SlashLayout.MONTH_FIRST;
+        } else if (sampled >= SAMPLE_SIZE) {
+            // No sampled value was unambiguous; keep the historical precedence
+            slashLayout = SlashLayout.BY_WIDTH;
+        }
+    }
+
+    private LocalDateTime resolveSlashDate(long[] f) {
+        SlashLayout layout = slashLayout;
+        if (layout == null || layout == SlashLayout.BY_WIDTH) {
+            // dd/MM/yyyy needs two digits for both; M/d/yyyy takes the rest
+            layout = f[6] == 2 && f[7] == 2 ? SlashLayout.DAY_FIRST : SlashLayout.MONTH_FIRST;
+        }
+        if (layout == SlashLayout.MONTH_FIRST) {
+            LocalDateTime monthFirst = toDateTime(f[2], f[0], f[1], f[3], f[4], f[5]);
+            return monthFirst != null ? monthFirst : toDateTime(f[2], f[1], f[0], f[3], f[4], f[5]);
+        }
+        LocalDateTime dayFirst = toDateTime(f[2], f[1], f[0], f[3], f[4], f[5]);
+        return dayFirst != null ? dayFirst : toDateTime(f[2], f[0], f[1], f[3], f[4], f[5]);
+    }
+
+    /**
+     * a/b/yyyy H:mm[:ss] with 1-2 digit a, b and hour; fields are a, b, year, hour,
+     * minute, second, then the digit counts of a and b
+     */
+    private static boolean scanSlashDate(String s, long[] fields) {
+        int pos = scanNumber(s, 0, 1, 2, fields, 0);
+        if (pos < 0 || !charAt(s, pos, '/')) return false;
+        fields[6] = pos;
+        int start = pos + 1;
+        pos = scanNumber(s, start, 1, 2, fields, 1);
+        if (pos < 0 || !charAt(s, pos, '/')) return false;
+        fields[7] = pos - start;
+        pos = scanNumber(s, pos + 1, 4, 4, fields, 2);
+        if (pos < 0 || !charAt(s, pos, ' ')) return false;
+        return scanTime(s, pos + 1, 1, fields);
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm[:ss] or yyyy-MM-ddTHH:mm[:ss]; fields are year, month, day, hour, minute, second
+     */
+    private static boolean scanIsoDate(String s, long[] fields) {
+        int pos = scanNumber(s, 0, 4, 4, fields, 0);
+        if (pos < 0 || !charAt(s, pos, '-')) return false;
+        pos = scanNumber(s, pos + 1, 2, 2, fields, 1);
+        if (pos < 0 || !charAt(s, pos, '-')) return false;
+        pos = scanNumber(s, pos + 1, 2, 2, fields, 2);
+        if (pos < 0 || !(charAt(s, pos, ' ') || charAt(s, pos, 'T'))) return false;
+        return scanTime(s, pos + 1, 2, fields);
+    }
+
+    private static boolean scanTime(String s, int pos, int minHourDigits, long[] fields) {
+        pos = scanNumber(s, pos, minHourDigits, 2, fields, 3);
+        if (pos < 0 || !charAt(s, pos, ':')) return false;
+        pos = scanNumber(s, pos + 1, 2, 2, fields, 4);
+        if (pos < 0) return false;
+        fields[5] = 0;
+        if (pos == s.length()) return true;
+        if (!charAt(s, pos, ':')) return false;
+        pos = scanNumber(s, pos + 1, 2, 2, fields, 5);
+        return pos == s.length();
+    }
+
+    /**
+     * Read minDigits..maxDigits ASCII digits into fields[index]; returns the next position or -1
+     */
+    private static int scanNumber(String s, int pos, int minDigits, int maxDigits, long[] fields, int index) {
+        long value = 0;
+        int digits = 0;
+        while (pos < s.length() && digits < maxDigits) {
+            char c = s.charAt(pos);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            digits++;
+            pos++;
+        }
+        if (digits < minDigits) return -1;
+        fields[index] = value;
+        return pos;
+    }
+
+    private static boolean charAt(String s, int pos, char expected) {
+        return pos < s.length() && s.charAt(pos) == expected;
+    }
+
+    private static LocalDateTime toDateTime(long year, long month, long day, long hour, long minute, long second) {
+        if (month < 1 || month > 12 || day < 1 || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        if (day > Month.of((int) month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDateTime.of((int) year, (int) month, (int) day, (int) hour, (int) minute, (int) second);
+    }
+
+    private static LocalDateTime parseWithFormatters(String text) {
+        for (DateTimeFormatter formatter : FALLBACK_FORMATTERS) {
+            try {
+                return LocalDateTime.parse(text, formatter);
+            } catch (DateTimeParseException e) {
+                // Try next format
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package g2.g2_gp_project.util;
+
+/**
+ * Single-pass parsers for the Quantity and UnitPrice columns. They validate and
+ * convert in one scan over the characters, without regex splits, intermediate
+ * strings or exceptions for bad input.
+ */
+public final class NumericFieldScanner {
+
+    /**
+     * Returned for blank, malformed or out-of-range values
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // Largest price NUMERIC(10,2) holds: 99999999.99
+    private static final long MAX_PRICE_UNITS = 99_999_999L;
+    private static final long MAX_PRICE_CENTS = MAX_PRICE_UNITS * 100 + 99;
+
+    private NumericFieldScanner() {
+    }
+
+    /**
+     * Parse a quantity such as "6", "-2" or "3.0". Digits after the decimal point
+     * are dropped, as before; they must still be digits.
+     *
+     * @return the quantity (within int range) or {@link #INVALID}
+     */
+    public static long parseQuantity(CharSequence value) {
+        if (value == null) return INVALID;
+        int end = trimEnd(value);
+        int pos = trimStart(value, end);
+
+        boolean negative = false;
+        if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+            negative = value.charAt(pos) == '-';
+            pos++;
+        }
+
+        long result = 0;
+        int digits = 0;
+        while (pos < end && isDigit(value.charAt(pos))) {
+            result = result * 10 + (value.charAt(pos) - '0');
+            if (result > (long) Integer.MAX_VALUE + 1) return INVALID;
+            digits++;
+            pos++;
+        }
+        if (digits == 0) return INVALID;
+
+        if (pos < end && value.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(value.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos != end) return INVALID;
+
+        result = negative ? -result : result;
+        return result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE ? result : INVALID;
+    }
+
+    /**
+     * Parse a price such as "2.55", "-0.5" or "12" into cents. More than two
+     * decimals are rounded half-up, matching how NUMERIC(10,2) stores them;
+     * prices that do not fit that column are invalid.
+     *
+     * @return the price in cents or {@link #INVALID}
+     */
+    public static long parsePriceCents(CharSequence value) {
+        if (value == null) return INVALID;
+        int end = trimEnd(value);
+        int pos = trimStart(value, end);
+
+        boolean negative = false;
+        if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+            negative = value.charAt(pos) == '-';
+            pos++;
+        }
+
+        long units = 0;
+        int intDigits = 0;
+        while (pos < end && isDigit(value.charAt(pos))) {
+            units = units * 10 + (value.charAt(pos) - '0');
+            if (units > MAX_PRICE_UNITS) return INVALID;
+            intDigits++;
+            pos++;
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (pos < end && value.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(value.charAt(pos))) {
+                int digit = value.charAt(pos) - '0';
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                }
+                fractionDigits++;
+                pos++;
+            }
+        }
+        if (pos != end || intDigits + fractionDigits == 0) return INVALID;
+
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = units * 100 + fraction + (roundUp ? 1 : 0);
+        if (cents > MAX_PRICE_CENTS) return INVALID;
+        return negative ? -cents : cents;
+    }
+
+    public static boolean isValidQuantity(CharSequence value) {
+        return parseQuantity(value) != INVALID;
+    }
+
+    public static boolean isValidPrice(CharSequence value) {
+        return parsePriceCents(value) != INVALID;
+    }
+
+    private static int trimEnd(CharSequence value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimStart(CharSequence value, int end) {
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
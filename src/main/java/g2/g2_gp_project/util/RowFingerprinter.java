@@ -0,0 +1,119 @@
+package g2.g2_gp_project.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Content fingerprints for raw transaction rows, so rows that were already
+ * staged by an earlier upload of the same (or an overlapping) file can be skipped.
+ *
+ * The fingerprint covers invoice, stock code, quantity, date and price plus an
+ * occurrence number, so identical lines within one invoice stay distinct rows
+ * and still match the same lines in a re-uploaded file. Occurrences are counted
+ * over the whole file, also when the rows of an invoice are not contiguous; the
+ * counter keeps a 64-bit hash and a count per distinct line rather than the
+ * line itself.
+ *
+ * Not thread-safe; use one instance per file.
+ */
+public class RowFingerprinter {
+
+    private static final char SEPARATOR = '\u001F';
+    private static final int FINGERPRINT_BYTES = 16;
+
+    private final MessageDigest digest;
+    private final StringBuilder content = new StringBuilder(128);
+    private final OccurrenceCounter occurrences = new OccurrenceCounter();
+
+    public RowFingerprinter() {
+        this.digest = sha256();
+    }
+
+    public String fingerprint(String invoiceNo, String stockCode, String quantity, String invoiceDate, String unitPrice) {
+        content.setLength(0);
+        content.append(normalize(invoiceNo)).append(SEPARATOR)
+                .append(normalize(stockCode)).append(SEPARATOR)
+                .append(normalize(quantity)).append(SEPARATOR)
+                .append(normalize(invoiceDate)).append(SEPARATOR)
+                .append(normalize(unitPrice));
+        int occurrence = occurrences.increment(hash64(content));
+        content.append(SEPARATOR).append(occurrence);
+
+        byte[] hash = digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, FINGERPRINT_BYTES));
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the line; collisions only matter among the lines of
+     * one file and are negligible at that scale
+     */
+    private static long hash64(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Open-addressing map from line hash to occurrence count, without boxing
+     */
+    private static class OccurrenceCounter {
+        private long[] keys = new long[1024];
+        private int[] counts = new int[1024];
+        private int size;
+
+        int increment(long key) {
+            int slot = find(keys, counts, key);
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                if (++size > keys.length / 2) {
+                    counts[slot] = 1;
+                    grow();
+                    return 1;
+                }
+            }
+            return ++counts[slot];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int slot = find(keys, counts, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        // Empty slots have a count of 0, so every key value (0 included) can be stored
+        private static int find(long[] keys, int[] counts, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
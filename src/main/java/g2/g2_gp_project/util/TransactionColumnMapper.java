@@ -0,0 +1,120 @@
+package g2.g2_gp_project.util;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maps the transaction columns of an import file to field indices.
+ * The header is resolved once per file (case-insensitive, ignoring spaces and
+ * underscores, with the aliases used by common retail exports), so each row is
+ * read by index instead of by header-name lookups.
+ */
+public class TransactionColumnMapper {
+
+    public enum Column {
+        INVOICE_NO("InvoiceNo", "Invoice", "InvoiceNumber"),
+        STOCK_CODE("StockCode", "ProductCode", "SKU"),
+        DESCRIPTION("Description", "ProductName"),
+        QUANTITY("Quantity", "Qty"),
+        INVOICE_DATE("InvoiceDate", "Date", "OrderDate"),
+        UNIT_PRICE("UnitPrice", "Price"),
+        CUSTOMER_ID("CustomerID", "Customer ID", "CustomerNo"),
+        COUNTRY("Country");
+
+        private final List<String> names;
+
+        Column(String... names) {
+            this.names = List.of(names);
+        }
+
+        /**
+         * Canonical column name, as used in reports and log messages
+         */
+        public String getName() {
+            return names.get(0);
+        }
+    }
+
+    private final int[] indices = new int[Column.values().length];
+    private final String[] headers = new String[Column.values().length];
+    private final List<Column> missingColumns = new ArrayList<>();
+
+    private TransactionColumnMapper(List<String> headerNames) {
+        Arrays.fill(indices, -1);
+        for (Column column : Column.values()) {
+            // Aliases are tried in order, so the canonical name wins over a looser match
+            for (String name : column.names) {
+                int index = findHeader(headerNames, normalize(name));
+                if (index >= 0) {
+                    indices[column.ordinal()] = index;
+                    headers[column.ordinal()] = headerNames.get(index);
+                    break;
+                }
+            }
+            if (indices[column.ordinal()] < 0) {
+                missingColumns.add(column);
+            }
+        }
+    }
+
+    /**
+     * Resolve the columns of a header row
+     */
+    public static TransactionColumnMapper compile(List<String> headerNames) {
+        return new TransactionColumnMapper(headerNames);
+    }
+
+    public List<Column> getMissingColumns() {
+        return Collections.unmodifiableList(missingColumns);
+    }
+
+    /**
+     * Header of the file that the column was resolved to, or null if it is missing
+     */
+    public String getHeader(Column column) {
+        return headers[column.ordinal()];
+    }
+
+    /**
+     * Value of a column in a CSV record; "" if the column is missing or the record is short
+     */
+    public String get(CSVRecord record, Column column) {
+        int index = indices[column.ordinal()];
+        return index >= 0 && index < record.size() ? record.get(index) : "";
+    }
+
+    /**
+     * Value of a column in a row of cells; "" if the column is missing or the row is short
+     */
+    public String get(List<String> cells, Column column) {
+        int index = indices[column.ordinal()];
+        return index >= 0 && index < cells.size() ? cells.get(index) : "";
+    }
+
+    private static int findHeader(List<String> headerNames, String normalizedName) {
+        for (int i = 0; i < headerNames.size(); i++) {
+            String header = headerNames.get(i);
+            if (header != null && normalize(header).equals(normalizedName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            // A UTF-8 byte order mark can stick to the first header
+            if (c != ' ' && c != '_' && c != '\uFEFF') {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+}
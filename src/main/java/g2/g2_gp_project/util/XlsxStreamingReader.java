@@ -0,0 +1,122 @@
+package g2.g2_gp_project.util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Event-based (SAX) reader for the first sheet of an .xlsx file.
+ * Rows are pushed to a handler as they are parsed, so memory use does not
+ * depend on the number of rows (only the shared strings table is kept).
+ * Date cells are rendered as "yyyy-MM-dd HH:mm:ss"; other numeric cells as
+ * their plain value, whatever their display format.
+ */
+public class XlsxStreamingReader {
+
+    /**
+     * Receives one row at a time; cells are indexed by column, missing cells are ""
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void handleRow(int rowNumber, List<String> cells);
+    }
+
+    private XlsxStreamingReader() {
+    }
+
+    /**
+     * Read the first sheet of the workbook and pass each row to the handler.
+     * Row numbers are 1-based like in Excel.
+     */
+    public static void read(File file, RowHandler handler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IllegalArgumentException("Excel file has no sheets");
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, strings, new RowCollector(handler), new CellValueFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    /**
+     * Collects the cells of the current row and hands the row over on endRow
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+        private int currentColumn = -1;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            currentColumn = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.handleRow(rowNum + 1, cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // The cell reference can be missing in files written by some tools
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : currentColumn + 1;
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue != null ? formattedValue : "");
+            currentColumn = column;
+        }
+    }
+
+    /**
+     * Formats date cells as "yyyy-MM-dd HH:mm:ss" so they match the CSV date
+     * formats, instead of the locale-specific display format of the cell.
+     * Other numbers are written as their plain value ("1234", "2.55"), so
+     * thousands separators, currency symbols or display rounding do not end up
+     * in the quantity and price columns.
+     */
+    private static class CellValueFormatter extends DataFormatter {
+        private static final DateTimeFormatter ISO_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).format(ISO_DATE_TIME);
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
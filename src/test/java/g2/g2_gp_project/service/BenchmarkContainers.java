@@ -0,0 +1,28 @@
+package g2.g2_gp_project.service;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Throwaway PostgreSQL and MongoDB for the load benchmarks, so they never touch
+ * the databases in application.properties. The connection properties are
+ * replaced by those of the containers.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+class BenchmarkContainers {
+
+    @Bean
+    @ServiceConnection
+    PostgreSQLContainer<?> postgres() {
+        return new PostgreSQLContainer<>("postgres:16-alpine");
+    }
+
+    @Bean
+    @ServiceConnection
+    MongoDBContainer mongo() {
+        return new MongoDBContainer("mongo:7.0");
+    }
+}
@@ -0,0 +1,158 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.dto.DataImportResult;
+import g2.g2_gp_project.dto.ImportOptions;
+import g2.g2_gp_project.repository.CustomerRepository;
+import g2.g2_gp_project.repository.ImportCheckpointRepository;
+import g2.g2_gp_project.repository.ImportedFileRepository;
+import g2.g2_gp_project.repository.OrderItemRepository;
+import g2.g2_gp_project.repository.OrderRepository;
+import g2.g2_gp_project.repository.ProductRepository;
+import g2.g2_gp_project.repository.RawTransactionRepository;
+import g2.g2_gp_project.repository.RejectedTransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Runs {@link DataImportService#processAndLoadFile} on a 2M-row synthetic
+ * export (about 180 MB) with MongoDB and PostgreSQL stubbed out. The stub
+ * staging loader counts and drops each chunk, so the heap only holds what the
+ * import itself keeps: the file is hashed, parsed, fingerprinted and staged
+ * chunk by chunk. Skipped unless the heap is smaller than the file, so that
+ * finishing at all shows rows are not retained:
+ * {@code mvn test -Dtest=ImportMemoryBenchmarkTest -Dbenchmark=true -DargLine=-Xmx64m}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ImportMemoryBenchmarkTest {
+
+    private static final int ROWS = 2_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void uploadIsStagedInBoundedHeap() throws IOException {
+        importAndCheckHeap("upload, stream parser", new ImportOptions());
+    }
+
+    @Test
+    void localFileIsStagedInBoundedHeap() throws IOException {
+        importAndCheckHeap("import-local, channel reader", ImportOptions.builder().readInPlace(true).build());
+    }
+
+    private void importAndCheckHeap(String name, ImportOptions options) throws IOException {
+        Path file = writeExport();
+        assumeTrue(Runtime.getRuntime().maxMemory() < Files.size(file),
+                "needs a heap smaller than the file, e.g. -DargLine=-Xmx64m");
+        AtomicLong staged = new AtomicLong();
+        DataImportService service = importService(staged);
+        resetPeakHeap();
+
+        DataImportResult result = service.processAndLoadFile(new FileSystemResource(file), "export.csv",
+                new ImportProgress(), options);
+
+        long peak = peakHeap();
+        log.info("{}: {} rows, file {} MB, max heap {} MB, peak heap {} MB", name, result.getRawRecordsLoaded(),
+                Files.size(file) >> 20, Runtime.getRuntime().maxMemory() >> 20, peak >> 20);
+        assertTrue(result.isSuccess(), result.getMessage());
+        assertEquals(ROWS, result.getRawRecordsLoaded());
+        assertEquals(ROWS, staged.get());
+    }
+
+    /**
+     * The service with every store stubbed; the staging loader counts the rows it is given
+     */
+    private static DataImportService importService(AtomicLong staged) {
+        MongoStagingLoader stagingLoader = stub(MongoStagingLoader.class);
+        when(stagingLoader.insert(anyList())).thenAnswer(invocation -> {
+            int rows = invocation.<List<?>>getArgument(0).size();
+            staged.addAndGet(rows);
+            return rows;
+        });
+
+        DataImportService service = new DataImportService(stub(RawTransactionRepository.class),
+                stub(CustomerRepository.class), stub(ProductRepository.class), stub(OrderRepository.class),
+                stub(OrderItemRepository.class), stub(ImportCheckpointRepository.class),
+                stub(ImportedFileRepository.class), stub(RejectedTransactionRepository.class), stagingLoader,
+                stub(PostgresCopyLoader.class), stub(PostgresUpsertLoader.class), stub(MongoTemplate.class),
+                new TransactionTemplate(stub(PlatformTransactionManager.class)));
+        // Defaults of application.properties
+        ReflectionTestUtils.setField(service, "importChunkSize", 5000);
+        ReflectionTestUtils.setField(service, "preloadChunkSize", 2000);
+        ReflectionTestUtils.setField(service, "loadMode", "jpa");
+        ReflectionTestUtils.setField(service, "upsertDimensions", true);
+        ReflectionTestUtils.setField(service, "transformParallelism", 1);
+        ReflectionTestUtils.setField(service, "cursorBatchSize", 2000);
+        ReflectionTestUtils.setField(service, "pipelineEnabled", true);
+        ReflectionTestUtils.setField(service, "pipelineQueueCapacity", 4);
+        ReflectionTestUtils.setField(service, "deduplicate", true);
+        return service;
+    }
+
+    // Stub-only mocks keep no invocations, so the chunks passed to them can be collected
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private Path writeExport() throws IOException {
+        Path file = tempDir.resolve("export.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("InvoiceNo,StockCode,Description,Quantity,InvoiceDate,UnitPrice,CustomerID,Country\n");
+            for (int i = 0; i < ROWS; i++) {
+                writer.write(String.valueOf(536365 + i / 20));
+                writer.write(",8512" + (i % 997) + "A,WHITE HANGING HEART T-LIGHT HOLDER,");
+                writer.write(String.valueOf(1 + i % 24));
+                writer.write(",12/1/2010 8:26,2.55,");
+                writer.write(String.valueOf(12346 + i % 4339));
+                writer.write(",United Kingdom\n");
+            }
+        }
+        return file;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Sum of per-pool peaks, so an upper bound of the heap in use at any one time
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
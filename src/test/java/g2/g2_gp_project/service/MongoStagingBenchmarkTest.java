@@ -0,0 +1,99 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.RawTransaction;
+import g2.g2_gp_project.repository.RawTransactionRepository;
+import g2.g2_gp_project.util.BenchmarkTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Staged docs/sec of {@link MongoStagingLoader}'s unordered bulk inserts against
+ * the RawTransactionRepository.saveAll they replaced: 200,000 raw rows in chunks
+ * of 5,000, the default etl.import.chunk-size, on a MongoDB container. Each
+ * round stages a new batch and deletes it afterwards.
+ * Needs Docker: {@code mvn test -Dtest=MongoStagingBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@SpringBootTest
+@Import(BenchmarkContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MongoStagingBenchmarkTest {
+
+    private static final int RAW_ROWS = 200_000;
+    private static final int CHUNK_SIZE = 5000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private RawTransactionRepository rawTransactionRepository;
+    @Autowired
+    private MongoStagingLoader mongoStagingLoader;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void bulkInsertVersusSaveAll() {
+        long saveAll = bestOfStaged(rawTransactionRepository::saveAll);
+        long bulk = bestOfStaged(mongoStagingLoader::insert);
+
+        log.info("{} raw rows: saveAll {} docs/sec, unordered bulk insert {} docs/sec", RAW_ROWS,
+                RAW_ROWS * 1_000_000_000L / saveAll, RAW_ROWS * 1_000_000_000L / bulk);
+    }
+
+    /**
+     * Best time of staging a fresh batch chunk by chunk; building and deleting the batch is not timed
+     */
+    private long bestOfStaged(Consumer<List<RawTransaction>> insert) {
+        return BenchmarkTimer.bestOfTimed(ROUNDS, () -> {
+            String batchId = "benchmark-" + UUID.randomUUID();
+            List<RawTransaction> rows = rawTransactions(batchId);
+            long nanos = BenchmarkTimer.time(() -> {
+                for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+                    insert.accept(rows.subList(from, Math.min(from + CHUNK_SIZE, rows.size())));
+                }
+            });
+            assertEquals(RAW_ROWS, mongoTemplate.count(
+                    Query.query(Criteria.where("importBatchId").is(batchId)), RawTransaction.class));
+            rawTransactionRepository.deleteByImportBatchId(batchId);
+            return nanos;
+        });
+    }
+
+    private static List<RawTransaction> rawTransactions(String batchId) {
+        List<RawTransaction> rows = new ArrayList<>(RAW_ROWS);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < RAW_ROWS; i++) {
+            RawTransaction raw = new RawTransaction();
+            raw.setInvoiceNo(String.valueOf(536365 + i / 20));
+            raw.setStockCode("85123A");
+            raw.setDescription("WHITE HANGING HEART T-LIGHT HOLDER");
+            raw.setQuantity(String.valueOf(1 + i % 24));
+            raw.setInvoiceDate("12/1/2010 8:26");
+            raw.setUnitPrice("2.55");
+            raw.setCustomerId("17850");
+            raw.setCountry("United Kingdom");
+            raw.setImportedAt(now);
+            raw.setFileName("benchmark.csv");
+            raw.setImportBatchId(batchId);
+            raw.setRowNumber(i + 2);
+            rows.add(raw);
+        }
+        return rows;
+    }
+}
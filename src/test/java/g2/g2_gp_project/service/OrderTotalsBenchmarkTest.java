@@ -0,0 +1,110 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.Order;
+import g2.g2_gp_project.entity.OrderItem;
+import g2.g2_gp_project.service.DataImportService.OrderTotals;
+import g2.g2_gp_project.util.BenchmarkTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-order subtotals: the {@link OrderTotals} accumulator filled while items are
+ * created, against the nested loop over all items per order that it replaced.
+ * Orders have 20 lines, like the Online Retail export.
+ * {@code mvn test -Dtest=OrderTotalsBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderTotalsBenchmarkTest {
+
+    private static final int LINES_PER_ORDER = 20;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void accumulatorScalesLinearly() {
+        double cheapest = Double.MAX_VALUE;
+        double largest = 0;
+        for (int lines = 125_000; lines <= 1_000_000; lines *= 2) {
+            List<OrderItem> items = orderItems(lines);
+            double nanosPerLine = (double) BenchmarkTimer.bestOf(ROUNDS, () -> accumulate(items)) / lines;
+            log.info("accumulator, {} lines: {} ns/line", lines, String.format("%.1f", nanosPerLine));
+            cheapest = Math.min(cheapest, nanosPerLine);
+            largest = nanosPerLine;
+        }
+        // Linear: at 8x the lines the cost per line stays within a small factor of the cheapest run
+        assertTrue(largest < cheapest * 4, "cost per line grew from " + cheapest + " to " + largest + " ns");
+    }
+
+    @Test
+    void nestedLoopScalesQuadratically() {
+        // Kept small: at 1M lines the nested loop needs 50 billion comparisons
+        for (int lines = 10_000; lines <= 40_000; lines *= 2) {
+            List<OrderItem> items = orderItems(lines);
+            Map<String, OrderTotals> totals = accumulate(items);
+            Map<String, BigDecimal> subtotals = new HashMap<>();
+            long best = BenchmarkTimer.bestOf(ROUNDS, () -> subtotals.putAll(previousSubtotals(items)));
+            for (Map.Entry<String, BigDecimal> subtotal : subtotals.entrySet()) {
+                assertEquals(subtotal.getValue(), totals.get(subtotal.getKey()).getSubtotal());
+            }
+            log.info("nested loop, {} lines: {} ns/line", lines, String.format("%.1f", (double) best / lines));
+        }
+    }
+
+    // Same accumulation as DataImportService.transformRow
+    private static Map<String, OrderTotals> accumulate(List<OrderItem> items) {
+        Map<String, OrderTotals> totals = new HashMap<>();
+        for (OrderItem item : items) {
+            totals.computeIfAbsent(item.getOrder().getOrderId(), k -> new OrderTotals()).add(item);
+        }
+        return totals;
+    }
+
+    // DataImportService.transformAndLoadToPostgres before the accumulator
+    private static Map<String, BigDecimal> previousSubtotals(List<OrderItem> items) {
+        Map<String, Order> orders = new HashMap<>();
+        for (OrderItem item : items) {
+            orders.putIfAbsent(item.getOrder().getOrderId(), item.getOrder());
+        }
+        Map<String, BigDecimal> subtotals = new HashMap<>();
+        for (Order order : orders.values()) {
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (OrderItem item : items) {
+                if (item.getOrder().getOrderId().equals(order.getOrderId())) {
+                    BigDecimal itemTotal = item.getUnitPrice().multiply(new BigDecimal(item.getQuantity()));
+                    subtotal = subtotal.add(itemTotal);
+                }
+            }
+            subtotals.put(order.getOrderId(), subtotal);
+        }
+        return subtotals;
+    }
+
+    private static List<OrderItem> orderItems(int lines) {
+        Random random = new Random(42);
+        List<OrderItem> items = new ArrayList<>(lines);
+        Order order = null;
+        for (int i = 0; i < lines; i++) {
+            if (i % LINES_PER_ORDER == 0) {
+                order = new Order();
+                order.setOrderId(String.valueOf(500_000 + i / LINES_PER_ORDER));
+            }
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setQuantity(1 + random.nextInt(24));
+            item.setUnitPrice(BigDecimal.valueOf(random.nextInt(5000), 2));
+            items.add(item);
+        }
+        return items;
+    }
+}
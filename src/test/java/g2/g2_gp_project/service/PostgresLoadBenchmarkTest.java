@@ -0,0 +1,139 @@
+package g2.g2_gp_project.service;
+
+import g2.g2_gp_project.entity.Customer;
+import g2.g2_gp_project.entity.Order;
+import g2.g2_gp_project.entity.OrderItem;
+import g2.g2_gp_project.entity.Product;
+import g2.g2_gp_project.repository.CustomerRepository;
+import g2.g2_gp_project.repository.OrderItemRepository;
+import g2.g2_gp_project.repository.OrderRepository;
+import g2.g2_gp_project.repository.ProductRepository;
+import g2.g2_gp_project.util.BenchmarkTimer;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Orders and order items written with {@link PostgresCopyLoader} against JPA
+ * saveAll, 2,500 orders of 20 lines each, on a PostgreSQL container. Every round
+ * runs in a transaction that is rolled back, so all rounds load the same rows.
+ * Needs Docker: {@code mvn test -Dtest=PostgresLoadBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@SpringBootTest
+@Import(BenchmarkContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PostgresLoadBenchmarkTest {
+
+    private static final int ORDERS = 2_500;
+    private static final int LINES_PER_ORDER = 20;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private PostgresCopyLoader postgresCopyLoader;
+
+    @Test
+    void copyVersusSaveAll() {
+        long saveAll = bestOfRolledBack(items -> {
+            Map<String, Order> savedOrders = new HashMap<>();
+            for (Order order : orderRepository.saveAll(ordersOf(items))) {
+                savedOrders.put(order.getOrderId(), order);
+            }
+            for (OrderItem item : items) {
+                item.setOrder(savedOrders.get(item.getOrder().getOrderId()));
+            }
+            assertEquals(items.size(), orderItemRepository.saveAll(items).size());
+            entityManager.flush();
+        });
+        long copy = bestOfRolledBack(items -> {
+            List<Order> orders = ordersOf(items);
+            assertEquals(orders.size(), postgresCopyLoader.copyOrders(orders));
+            assertEquals(items.size(), postgresCopyLoader.copyOrderItems(items));
+        });
+
+        int rows = ORDERS * (LINES_PER_ORDER + 1);
+        log.info("{} order + item rows: saveAll {} ms ({} rows/sec), COPY {} ms ({} rows/sec)", rows,
+                saveAll / 1_000_000, rows * 1_000_000_000L / saveAll, copy / 1_000_000,
+                rows * 1_000_000_000L / copy);
+    }
+
+    /**
+     * Best time of the load over fresh orders and items; the parent customer and
+     * product are saved untimed in the same transaction, which is then rolled back
+     */
+    private long bestOfRolledBack(Consumer<List<OrderItem>> load) {
+        return BenchmarkTimer.bestOfTimed(ROUNDS, () -> transactionTemplate.execute(status -> {
+            List<OrderItem> items = orderItems();
+            long nanos = BenchmarkTimer.time(() -> load.accept(items));
+            status.setRollbackOnly();
+            return nanos;
+        }));
+    }
+
+    private List<OrderItem> orderItems() {
+        Customer customer = new Customer();
+        customer.setCustomerId("BENCH");
+        customer = customerRepository.save(customer);
+        Product product = new Product();
+        product.setStockCode("BENCH");
+        product.setUnitPrice(new BigDecimal("2.55"));
+        product = productRepository.save(product);
+        entityManager.flush();
+
+        List<OrderItem> items = new ArrayList<>(ORDERS * LINES_PER_ORDER);
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setOrderId("BENCH" + i);
+            order.setCustomer(customer);
+            order.setOrderDate(LocalDateTime.of(2010, 12, 1, 8, 26));
+            order.setStatus("Completed");
+            for (int line = 0; line < LINES_PER_ORDER; line++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1 + line);
+                item.setUnitPrice(product.getUnitPrice());
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static List<Order> ordersOf(List<OrderItem> items) {
+        Map<String, Order> orders = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            orders.putIfAbsent(item.getOrder().getOrderId(), item.getOrder());
+        }
+        return new ArrayList<>(orders.values());
+    }
+}
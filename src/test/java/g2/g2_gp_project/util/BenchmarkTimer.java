@@ -0,0 +1,42 @@
+package g2.g2_gp_project.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Wall-clock timing shared by the benchmark tests, which only run with
+ * {@code -Dbenchmark=true}. Not a JMH harness: every round is timed, the
+ * earlier ones double as warm-up and only the fastest one is kept.
+ */
+public final class BenchmarkTimer {
+
+    private BenchmarkTimer() {
+    }
+
+    /**
+     * Nanoseconds taken by one run of the task
+     */
+    public static long time(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Fastest of the given number of runs of the task, in nanoseconds
+     */
+    public static long bestOf(int rounds, Runnable task) {
+        return bestOfTimed(rounds, () -> time(task));
+    }
+
+    /**
+     * Fastest of the given number of rounds, in nanoseconds. Each round returns
+     * its own timing (see {@link #time}), so setup and cleanup can stay untimed.
+     */
+    public static long bestOfTimed(int rounds, LongSupplier round) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            best = Math.min(best, round.getAsLong());
+        }
+        return best;
+    }
+}
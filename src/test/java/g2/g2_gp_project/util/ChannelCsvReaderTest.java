@@ -0,0 +1,131 @@
+package g2.g2_gp_project.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelCsvReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsHeaderAndRecords() throws IOException {
+        Path file = write("\uFEFFInvoiceNo,StockCode,Quantity\r\n536365,85123A,6\r\n\r\n536366, 22633 ,\r\n");
+
+        List<Record> records = readAll(file, ',');
+        try (ChannelCsvReader reader = new ChannelCsvReader(file)) {
+            assertEquals("InvoiceNo,StockCode,Quantity", reader.readHeaderLine());
+        }
+
+        assertEquals(3, records.size());
+        assertEquals(List.of("InvoiceNo", "StockCode", "Quantity"), records.get(0).fields());
+        assertEquals(List.of("536365", "85123A", "6"), records.get(1).fields());
+        // Values are trimmed, empty values are null and empty lines are skipped
+        assertEquals(Arrays.asList("536366", "22633", null), records.get(2).fields());
+        assertEquals(3, records.get(2).number());
+        assertTrue(records.stream().allMatch(record -> record.error() == null));
+    }
+
+    @Test
+    void handlesQuotedFields() throws IOException {
+        Path file = write("a;b;c\n\"x;y\";\"say \"\"hi\"\"\";\"two\nlines\"\n  \"padded\"  ;2;3");
+
+        List<Record> records = readAll(file, ';');
+
+        assertEquals(List.of("x;y", "say \"hi\"", "two\nlines"), records.get(1).fields());
+        assertEquals(List.of("padded", "2", "3"), records.get(2).fields());
+        assertNull(records.get(1).error());
+        assertNull(records.get(2).error());
+    }
+
+    @Test
+    void reportsMalformedRecordsAndContinues() throws IOException {
+        Path file = write("a,b\n\"x\"y,1\n2,3\n4,\"open");
+
+        List<Record> records = readAll(file, ',');
+
+        assertEquals(4, records.size());
+        assertTrue(records.get(1).error().contains("closing quote"));
+        assertEquals(List.of("xy", "1"), records.get(1).fields());
+        assertNull(records.get(2).error());
+        assertEquals(List.of("2", "3"), records.get(2).fields());
+        assertTrue(records.get(3).error().contains("not closed"));
+        assertEquals(List.of("4", "open"), records.get(3).fields());
+    }
+
+    @Test
+    void keepsUtf8Values() throws IOException {
+        Path file = write("Description,Country\nCRÈME BRÛLÉE SET,España\n");
+
+        List<Record> records = readAll(file, ',');
+
+        assertEquals(List.of("CRÈME BRÛLÉE SET", "España"), records.get(1).fields());
+    }
+
+    @Test
+    void recordsMaySpanReads() throws IOException {
+        // Longer than one read, so at least one record is split between two reads
+        StringBuilder content = new StringBuilder("InvoiceNo,Description\n");
+        int rows = 60_000;
+        for (int i = 0; i < rows; i++) {
+            content.append(536365 + i).append(",\"WHITE HANGING HEART, T-LIGHT\"\n");
+        }
+        Path file = write(content.toString());
+
+        List<Record> records = readAll(file, ',');
+
+        assertEquals(rows + 1, records.size());
+        assertEquals(List.of(String.valueOf(536365 + rows - 1), "WHITE HANGING HEART, T-LIGHT"),
+                records.get(rows).fields());
+        assertTrue(records.stream().allMatch(record -> record.fields().size() == 2 && record.error() == null));
+    }
+
+    @Test
+    void positionReachesTheFileSize() throws Exception {
+        byte[] content = "a,b\n1,2\n3,4\n".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("position.csv"), content);
+
+        try (ChannelCsvReader reader = new ChannelCsvReader(file)) {
+            reader.read(',', (number, fields, error) -> {
+            });
+            assertEquals(content.length, reader.getPosition());
+        }
+    }
+
+    @Test
+    void emptyFileHasNoHeader() throws IOException {
+        Path file = write("");
+
+        try (ChannelCsvReader reader = new ChannelCsvReader(file)) {
+            assertNull(reader.readHeaderLine());
+        }
+        assertTrue(readAll(file, ',').isEmpty());
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(Files.createTempFile(tempDir, "import", ".csv"), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<Record> readAll(Path file, char delimiter) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (ChannelCsvReader reader = new ChannelCsvReader(file)) {
+            reader.read(delimiter, (number, fields, error) -> records.add(new Record(number, new ArrayList<>(fields), error)));
+        }
+        return records;
+    }
+
+    private record Record(int number, List<String> fields, String error) {
+    }
+}
@@ -0,0 +1,46 @@
+package g2.g2_gp_project.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvHeaderTest {
+
+    @Test
+    void detectsDelimiterInOrderOfPreference() {
+        assertEquals(';', CsvHeader.parse("InvoiceNo;Description, long;Quantity").getDelimiter());
+        assertEquals(',', CsvHeader.parse("InvoiceNo,StockCode\tQuantity").getDelimiter());
+        assertEquals('\t', CsvHeader.parse("InvoiceNo\tStockCode\tQuantity").getDelimiter());
+        assertEquals(',', CsvHeader.parse("InvoiceNo").getDelimiter());
+    }
+
+    @Test
+    void dropsTrailingDelimitersAndEmptyNames() {
+        CsvHeader header = CsvHeader.parse(" InvoiceNo ,, StockCode,Quantity,,,");
+
+        assertEquals(List.of("InvoiceNo", "StockCode", "Quantity"), header.getNames());
+    }
+
+    @Test
+    void rejectsEmptyHeader() {
+        assertThrows(IllegalArgumentException.class, () -> CsvHeader.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> CsvHeader.parse("   "));
+    }
+
+    @Test
+    void sniffRewindsTheReader() throws Exception {
+        BufferedReader reader = new BufferedReader(
+                new StringReader("InvoiceNo;Quantity\n536365;6\n"), CsvHeader.BUFFER_SIZE);
+
+        CsvHeader header = CsvHeader.sniff(reader);
+
+        assertEquals(List.of("InvoiceNo", "Quantity"), header.getNames());
+        assertEquals("InvoiceNo;Quantity", reader.readLine());
+        assertEquals("536365;6", reader.readLine());
+    }
+}
@@ -0,0 +1,102 @@
+package g2.g2_gp_project.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportDateParserTest {
+
+    @Test
+    void ambiguousSampleKeepsHistoricalPrecedence() {
+        ImportDateParser parser = new ImportDateParser();
+        parser.sniff(Collections.nCopies(ImportDateParser.SAMPLE_SIZE, "12/1/2010 8:26"));
+
+        assertTrue(parser.isLayoutKnown());
+        // Single-digit fields are M/d/yyyy, as in the Online Retail export
+        assertEquals(LocalDateTime.of(2010, 12, 1, 8, 26), parser.parse("12/1/2010 8:26"));
+        assertEquals(LocalDateTime.of(2011, 1, 2, 9, 5), parser.parse("1/2/2011 9:05"));
+        // Two-digit day and month are dd/MM/yyyy
+        assertEquals(LocalDateTime.of(2011, 4, 3, 10, 0), parser.parse("03/04/2011 10:00"));
+    }
+
+    @Test
+    void unsniffedParserUsesHistoricalPrecedence() {
+        ImportDateParser parser = new ImportDateParser();
+
+        assertEquals(LocalDateTime.of(2010, 12, 1, 8, 26), parser.parse("12/1/2010 8:26"));
+        assertFalse(parser.isLayoutKnown());
+        assertEquals(LocalDateTime.of(2011, 4, 3, 10, 0), parser.parse("03/04/2011 10:00"));
+    }
+
+    @Test
+    void dayFirstSampleReadsAmbiguousDatesDayFirst() {
+        ImportDateParser parser = new ImportDateParser();
+        parser.sniff(List.of("03/04/2011 10:00", "18/08/2011 6:30"));
+
+        assertEquals(LocalDateTime.of(2011, 8, 18, 6, 30), parser.parse("18/08/2011 6:30"));
+        assertEquals(LocalDateTime.of(2011, 4, 3, 10, 0), parser.parse("03/04/2011 10:00"));
+        assertEquals(LocalDateTime.of(2010, 1, 12, 8, 26), parser.parse("12/1/2010 8:26"));
+    }
+
+    @Test
+    void monthFirstSampleReadsAmbiguousDatesMonthFirst() {
+        ImportDateParser parser = new ImportDateParser();
+        parser.sniff(List.of("03/04/2011 10:00", "8/18/2011 6:30"));
+
+        assertEquals(LocalDateTime.of(2011, 8, 18, 6, 30), parser.parse("8/18/2011 6:30"));
+        assertEquals(LocalDateTime.of(2011, 3, 4, 10, 0), parser.parse("03/04/2011 10:00"));
+        assertEquals(LocalDateTime.of(2010, 12, 1, 8, 26), parser.parse("12/1/2010 8:26"));
+    }
+
+    @Test
+    void unambiguousDatesIgnoreTheLayout() {
+        ImportDateParser parser = new ImportDateParser();
+        parser.sniff(List.of("8/18/2011 6:30"));
+
+        assertEquals(LocalDateTime.of(2011, 8, 18, 6, 30), parser.parse("18/08/2011 06:30"));
+    }
+
+    @Test
+    void parsesIsoDates() {
+        ImportDateParser parser = new ImportDateParser();
+
+        assertEquals(LocalDateTime.of(2011, 8, 18, 8, 30), parser.parse("2011-08-18 08:30:00"));
+        assertEquals(LocalDateTime.of(2011, 8, 18, 8, 30, 15), parser.parse("2011-08-18T08:30:15"));
+        assertEquals(LocalDateTime.of(2011, 8, 18, 8, 30), parser.parse(" 2011-08-18 08:30 "));
+        // ISO values are not slash dates and do not decide the layout
+        assertFalse(parser.isLayoutKnown());
+    }
+
+    @Test
+    void onlyAmbiguousSlashDatesWaitForTheLayout() {
+        ImportDateParser parser = new ImportDateParser();
+
+        assertTrue(parser.isSettled("2011-08-18 08:30:00"));
+        assertTrue(parser.isSettled("18/08/2011 6:30"));
+        assertTrue(parser.isSettled("05/05/2011 6:30"));
+        assertFalse(parser.isSettled("03/04/2011 10:00"));
+
+        parser.sniff(List.of("18/08/2011 6:30"));
+        assertTrue(parser.isSettled("03/04/2011 10:00"));
+    }
+
+    @Test
+    void rejectsInvalidValues() {
+        ImportDateParser parser = new ImportDateParser();
+
+        assertNull(parser.parse(null));
+        assertNull(parser.parse("  "));
+        assertNull(parser.parse("32/02/2011 10:00"));
+        assertNull(parser.parse("2011-13-01 10:00:00"));
+        assertNull(parser.parse("18/08/2011 25:00"));
+        assertNull(parser.parse("not a date"));
+        assertFalse(parser.isValid("18/08/11 10:00"));
+    }
+}
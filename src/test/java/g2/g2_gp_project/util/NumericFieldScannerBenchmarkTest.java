@@ -0,0 +1,94 @@
+package g2.g2_gp_project.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Quantity and price parsing of {@link NumericFieldScanner} against the
+ * split/parseInt and new BigDecimal helpers it replaced, over a million
+ * Online Retail-like values with one bad value in a hundred.
+ * {@code mvn test -Dtest=NumericFieldScannerBenchmarkTest -Dbenchmark=true}
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NumericFieldScannerBenchmarkTest {
+
+    private static final int VALUES = 1_000_000;
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareWithPreviousHelpers() {
+        String[] quantities = new String[VALUES];
+        String[] prices = new String[VALUES];
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            // Mostly clean values like the Online Retail export, with a few bad ones
+            quantities[i] = i % 100 == 0 ? "n/a" : String.valueOf(random.nextInt(200) - 20);
+            prices[i] = i % 100 == 0 ? "" : (random.nextInt(5000) / 100) + "." + (10 + random.nextInt(90));
+        }
+
+        // Same results on every sampled value
+        for (int i = 0; i < VALUES; i += 997) {
+            assertEquals(previousParseInteger(quantities[i]), scannerParseInteger(quantities[i]));
+            assertEquals(previousParseCents(prices[i]), scannerParseCents(prices[i]));
+        }
+
+        report("quantity, split + parseInt", quantities, NumericFieldScannerBenchmarkTest::previousParseInteger);
+        report("quantity, scanner", quantities, NumericFieldScannerBenchmarkTest::scannerParseInteger);
+        report("price, new BigDecimal", prices, NumericFieldScannerBenchmarkTest::previousParseCents);
+        report("price, scanner", prices, NumericFieldScannerBenchmarkTest::scannerParseCents);
+    }
+
+    private static void report(String name, String[] values, ToLongFunction<String> parser) {
+        // Summed and logged so the parsing cannot be optimised away
+        long[] checksum = new long[1];
+        long best = BenchmarkTimer.bestOf(ROUNDS, () -> {
+            for (String value : values) {
+                checksum[0] += parser.applyAsLong(value);
+            }
+        });
+        log.info("{}: {} ns/value (checksum {})", name, String.format("%.1f", (double) best / values.length),
+                checksum[0]);
+    }
+
+    // DataImportService.parseInteger before the scanner
+    private static long previousParseInteger(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim().split("\\.")[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // DataImportService.parseBigDecimal before the scanner, in cents
+    private static long previousParseCents(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return new BigDecimal(value.trim()).movePointRight(2).longValue();
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long scannerParseInteger(String value) {
+        long quantity = NumericFieldScanner.parseQuantity(value);
+        return quantity == NumericFieldScanner.INVALID ? 0 : quantity;
+    }
+
+    private static long scannerParseCents(String value) {
+        long cents = NumericFieldScanner.parsePriceCents(value);
+        return cents == NumericFieldScanner.INVALID ? 0 : cents;
+    }
+}
@@ -0,0 +1,79 @@
+package g2.g2_gp_project.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NumericFieldScannerTest {
+
+    private static final long INVALID = NumericFieldScanner.INVALID;
+
+    @Test
+    void parsesQuantities() {
+        assertEquals(6, NumericFieldScanner.parseQuantity("6"));
+        assertEquals(-2, NumericFieldScanner.parseQuantity(" -2 "));
+        assertEquals(12, NumericFieldScanner.parseQuantity("+12"));
+        // The fraction is truncated, as Integer.parseInt(value.split("\\.")[0]) did
+        assertEquals(3, NumericFieldScanner.parseQuantity("3.9"));
+        assertEquals(Integer.MAX_VALUE, NumericFieldScanner.parseQuantity("2147483647"));
+        assertEquals(Integer.MIN_VALUE, NumericFieldScanner.parseQuantity("-2147483648"));
+    }
+
+    @Test
+    void rejectsInvalidQuantities() {
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity(null));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity(""));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("  "));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("-"));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("3.x"));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("1,000"));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("2147483648"));
+        assertEquals(INVALID, NumericFieldScanner.parseQuantity("99999999999999999999"));
+        assertFalse(NumericFieldScanner.isValidQuantity("abc"));
+    }
+
+    @Test
+    void parsesPricesIntoCents() {
+        assertEquals(255, NumericFieldScanner.parsePriceCents("2.55"));
+        assertEquals(-50, NumericFieldScanner.parsePriceCents("-0.5"));
+        assertEquals(1200, NumericFieldScanner.parsePriceCents(" 12 "));
+        assertEquals(50, NumericFieldScanner.parsePriceCents(".5"));
+        assertEquals(300, NumericFieldScanner.parsePriceCents("3."));
+        assertEquals(1250, NumericFieldScanner.parsePriceCents("0000000012.50"));
+        assertTrue(NumericFieldScanner.isValidPrice("0"));
+    }
+
+    @Test
+    void roundsExtraDecimalsHalfUp() {
+        assertEquals(255, NumericFieldScanner.parsePriceCents("2.549"));
+        assertEquals(255, NumericFieldScanner.parsePriceCents("2.545"));
+        assertEquals(254, NumericFieldScanner.parsePriceCents("2.5449"));
+        assertEquals(-255, NumericFieldScanner.parsePriceCents("-2.545"));
+    }
+
+    @Test
+    void rejectsPricesOutsideTheColumnRange() {
+        assertEquals(9_999_999_999L, NumericFieldScanner.parsePriceCents("99999999.99"));
+        assertEquals(-9_999_999_999L, NumericFieldScanner.parsePriceCents("-99999999.99"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("99999999.995"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("100000000"));
+        // 17 digits used to overflow to a negative number of cents
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("99999999999999999"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("12345678901234567890.5"));
+    }
+
+    @Test
+    void rejectsMalformedPrices() {
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents(null));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents(""));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("."));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("-"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("1.2.3"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("1e3"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("£2.55"));
+        assertEquals(INVALID, NumericFieldScanner.parsePriceCents("1,234"));
+        assertFalse(NumericFieldScanner.isValidPrice("n/a"));
+    }
+}
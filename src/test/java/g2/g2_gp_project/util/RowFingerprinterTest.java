@@ -0,0 +1,74 @@
+package g2.g2_gp_project.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowFingerprinterTest {
+
+    @Test
+    void sameRowsGiveSameFingerprintsAcrossFiles() {
+        RowFingerprinter first = new RowFingerprinter();
+        RowFingerprinter second = new RowFingerprinter();
+
+        assertEquals(first.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55"),
+                second.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55"));
+        // Surrounding spaces and null vs empty do not matter
+        assertEquals(first.fingerprint("536366", "22633", "6", "12/1/2010 8:28", null),
+                second.fingerprint(" 536366", "22633 ", "6", "12/1/2010 8:28", ""));
+    }
+
+    @Test
+    void differentRowsGiveDifferentFingerprints() {
+        RowFingerprinter fingerprinter = new RowFingerprinter();
+
+        assertNotEquals(fingerprinter.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55"),
+                fingerprinter.fingerprint("536365", "85123A", "8", "12/1/2010 8:26", "2.55"));
+    }
+
+    @Test
+    void identicalLinesOfOneInvoiceStayDistinct() {
+        RowFingerprinter fingerprinter = new RowFingerprinter();
+
+        String firstLine = fingerprinter.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55");
+        String secondLine = fingerprinter.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55");
+        assertNotEquals(firstLine, secondLine);
+
+        // A re-upload numbers them the same way
+        RowFingerprinter reupload = new RowFingerprinter();
+        assertEquals(firstLine, reupload.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55"));
+        assertEquals(secondLine, reupload.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55"));
+    }
+
+    @Test
+    void identicalLinesInSeparateRunsOfAnInvoiceStayDistinct() {
+        RowFingerprinter fingerprinter = new RowFingerprinter();
+
+        String firstRun = fingerprinter.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55");
+        fingerprinter.fingerprint("536366", "22633", "6", "12/1/2010 8:28", "1.85");
+        String secondRun = fingerprinter.fingerprint("536365", "85123A", "6", "12/1/2010 8:26", "2.55");
+
+        assertNotEquals(firstRun, secondRun);
+    }
+
+    @Test
+    void manyDistinctAndRepeatedLinesGetUniqueFingerprints() {
+        RowFingerprinter fingerprinter = new RowFingerprinter();
+        Set<String> fingerprints = new HashSet<>();
+
+        // Enough lines for the occurrence counter to grow several times
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int invoice = 0; invoice < 5_000; invoice++) {
+                fingerprints.add(fingerprinter.fingerprint(String.valueOf(536365 + invoice), "85123A", "6",
+                        "12/1/2010 8:26", "2.55"));
+            }
+        }
+        assertEquals(15_000, fingerprints.size());
+        assertTrue(fingerprints.stream().allMatch(fingerprint -> fingerprint.length() == 22));
+    }
+}
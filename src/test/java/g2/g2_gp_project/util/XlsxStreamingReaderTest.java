@@ -0,0 +1,76 @@
+package g2.g2_gp_project.util;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XlsxStreamingReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsRawNumbersAndIsoDates() throws Exception {
+        Path file = tempDir.resolve("import.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            CellStyle thousands = workbook.createCellStyle();
+            thousands.setDataFormat(workbook.createDataFormat().getFormat("#,##0"));
+            CellStyle currency = workbook.createCellStyle();
+            currency.setDataFormat(workbook.createDataFormat().getFormat("\"£\"#,##0.00"));
+            CellStyle rounded = workbook.createCellStyle();
+            rounded.setDataFormat(workbook.createDataFormat().getFormat("0"));
+            CellStyle date = workbook.createCellStyle();
+            date.setDataFormat(workbook.createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+
+            Sheet sheet = workbook.createSheet("Online Retail");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("InvoiceNo");
+            header.createCell(1).setCellValue("Quantity");
+            header.createCell(2).setCellValue("UnitPrice");
+            header.createCell(3).setCellValue("InvoiceDate");
+            header.createCell(4).setCellValue("CustomerID");
+
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("536365");
+            row.createCell(1).setCellValue(1234);
+            row.getCell(1).setCellStyle(thousands);
+            row.createCell(2).setCellValue(2.55);
+            row.getCell(2).setCellStyle(currency);
+            row.createCell(3).setCellValue(LocalDateTime.of(2010, 12, 1, 8, 26));
+            row.getCell(3).setCellStyle(date);
+            row.createCell(4).setCellValue(17850);
+
+            // Column 1 left empty: missing cells are ""
+            Row sparse = sheet.createRow(3);
+            sparse.createCell(0).setCellValue("536366");
+            sparse.createCell(2).setCellValue(0.85);
+            sparse.getCell(2).setCellStyle(rounded);
+
+            workbook.write(out);
+        }
+
+        List<Integer> rowNumbers = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        XlsxStreamingReader.read(file.toFile(), (rowNumber, cells) -> {
+            rowNumbers.add(rowNumber);
+            rows.add(new ArrayList<>(cells));
+        });
+
+        assertEquals(List.of(1, 2, 4), rowNumbers);
+        assertEquals(List.of("InvoiceNo", "Quantity", "UnitPrice", "InvoiceDate", "CustomerID"), rows.get(0));
+        assertEquals(List.of("536365", "1234", "2.55", "2010-12-01 08:26:00", "17850"), rows.get(1));
+        assertEquals(List.of("536366", "", "0.85"), rows.get(2));
+    }
+}